@@ -1,91 +1,426 @@
 package sourcedg.analysis;
 
-import java.util.Collection;
-import java.util.Collections;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Deque;
 import java.util.HashSet;
-import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
+import org.jgrapht.Graph;
+
 import sourcedg.graph.Edge;
 import sourcedg.graph.EdgeType;
+import sourcedg.graph.FrozenPDG;
 import sourcedg.graph.PDG;
 import sourcedg.graph.Vertex;
 
+/*
+ * Slices of a PDG run on the dense indices of its frozen snapshot, which is
+ * shared until the PDG is modified. Marks and stack are reused across calls of
+ * the same thread, so that a slice only allocates its result. Other graphs, such
+ * as edge type views, are traversed directly, so that a slice costs in
+ * proportion to its size rather than to the graph's. The batch slices take a
+ * snapshot of them once per call.
+ */
 public class PDGSlicer {
 
-	public static Set<Vertex> backward(final PDG pdg, final Set<Vertex> S) {
-		Set<EdgeType> k1 = new HashSet<>();
-		k1.add(EdgeType.PARAM_OUT);
-		Set<EdgeType> k2 = new HashSet<>();
-		Collections.addAll(k2, EdgeType.PARAM_IN, EdgeType.CALL);
-		final Set<Vertex> S2 = backwardSlice(pdg, S, k1);
-		final Set<Vertex> result = backwardSlice(pdg, S2, k2);
-		result.addAll(S2);
-		return result;
-	}
+	private static final int PARAM_OUT = mask(EdgeType.PARAM_OUT);
+	private static final int PARAM_IN_CALL = mask(EdgeType.PARAM_IN, EdgeType.CALL);
+
+	// Criteria sliced together by the batch slices, bounds the labels to 16 words per vertex.
+	private static final int BATCH = 1024;
 
-	public static Set<Vertex> backwardSlice(final PDG pdg, final Set<Vertex> S, final Set<EdgeType> kinds) {
-		final Set<Vertex> result = new HashSet<>();
-		final Set<Vertex> worklist = new HashSet<>(S);
-		while (!worklist.isEmpty()) {
-			final Vertex v = next(worklist);
-			result.add(v);
-			final Set<Vertex> w = incoming(pdg, result, v, kinds);
-			worklist.addAll(w);
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	public static Set<Vertex> backward(final Graph<Vertex, Edge> pdg, final Set<Vertex> S) {
+		if (!isIndexed(pdg)) {
+			final Set<Vertex> marked = new HashSet<>();
+			final Deque<Vertex> stack = push(pdg, S, marked, null);
+			traverse(pdg, marked, stack, PARAM_OUT, true, null);
+			stack.addAll(marked);
+			traverse(pdg, marked, stack, PARAM_IN_CALL, true, null);
+			return marked;
 		}
-		return result;
+		final FrozenPDG g = FrozenPDG.of(pdg);
+		final Scratch s = SCRATCH.get().reset(g.vertexCount());
+		s.push(g, S);
+		backwardSlice(g, s, PARAM_OUT, null);
+		// The second phase starts from the whole first slice.
+		s.pushMarked();
+		backwardSlice(g, s, PARAM_IN_CALL, null);
+		return s.result(g);
 	}
 
-	private static Set<Vertex> incoming(final PDG pdg, final Collection<Vertex> marked, final Vertex v,
+	public static Set<Vertex> backwardSlice(final Graph<Vertex, Edge> pdg, final Set<Vertex> S,
 			final Set<EdgeType> kinds) {
-		final Set<Vertex> result = new HashSet<>();
-		final Set<Edge> edges = pdg.incomingEdgesOf(v);
-		for (final Edge e : edges) {
-			if (!kinds.contains(e.getType()) && !marked.contains(e.getSource()))
-				result.add(e.getSource());
+		if (!isIndexed(pdg)) {
+			final Set<Vertex> marked = new HashSet<>();
+			traverse(pdg, marked, push(pdg, S, marked, null), mask(kinds), true, null);
+			return marked;
 		}
-		return result;
+		final FrozenPDG g = FrozenPDG.of(pdg);
+		final Scratch s = SCRATCH.get().reset(g.vertexCount());
+		s.push(g, S);
+		backwardSlice(g, s, mask(kinds), null);
+		return s.result(g);
 	}
 
-	public static Set<Vertex> forward(final PDG pdg, final Set<Vertex> S) {
-		Set<EdgeType> k1 = new HashSet<>();
-		Collections.addAll(k1, EdgeType.PARAM_IN, EdgeType.CALL);
-		Set<EdgeType> k2 = new HashSet<>();
-		k2.add(EdgeType.PARAM_OUT);
-		final Set<Vertex> S2 = forwardSlice(pdg, S, k1);
-		final Set<Vertex> result = forwardSlice(pdg, S2, k2);
-		result.addAll(S2);
+	// Marks everything reachable backwards from the stack through edges not in the
+	// excluded mask, without leaving the given vertices unless null.
+	private static void backwardSlice(final FrozenPDG g, final Scratch s, final int excluded, final BitSet within) {
+		final BitSet marks = s.marks;
+		final int[] stack = s.stack;
+		int sp = s.sp;
+		while (sp > 0) {
+			final int v = stack[--sp];
+			for (int p = g.firstIn(v); p < g.firstIn(v + 1); p++) {
+				if (excludes(excluded, g.typeOrdinal(g.inEdge(p))))
+					continue;
+				final int u = g.inSource(p);
+				if (!marks.get(u) && (within == null || within.get(u))) {
+					marks.set(u);
+					stack[sp++] = u;
+				}
+			}
+		}
+		s.sp = sp;
+	}
+
+	public static Set<Vertex> forward(final Graph<Vertex, Edge> pdg, final Set<Vertex> S) {
+		if (!isIndexed(pdg)) {
+			final Set<Vertex> marked = new HashSet<>();
+			final Deque<Vertex> stack = push(pdg, S, marked, null);
+			traverse(pdg, marked, stack, PARAM_IN_CALL, false, null);
+			stack.addAll(marked);
+			traverse(pdg, marked, stack, PARAM_OUT, false, null);
+			return marked;
+		}
+		final FrozenPDG g = FrozenPDG.of(pdg);
+		final Scratch s = SCRATCH.get().reset(g.vertexCount());
+		s.push(g, S);
+		forwardSlice(g, s, PARAM_IN_CALL);
+		// The second phase starts from the whole first slice.
+		s.pushMarked();
+		forwardSlice(g, s, PARAM_OUT);
+		return s.result(g);
+	}
+
+	// Vertices on the paths from the sources to the sinks: the backward slice of
+	// the sinks, phases included, without leaving the forward slice of the
+	// sources, which is only kept as marks. Compared to intersecting both slices,
+	// it leaves out the vertices of a method that are only on paths entering it
+	// from one call site and returning to another.
+	public static Set<Vertex> chop(final Graph<Vertex, Edge> pdg, final Set<Vertex> sources,
+			final Set<Vertex> sinks) {
+		if (!isIndexed(pdg)) {
+			final Set<Vertex> reachable = new HashSet<>();
+			Deque<Vertex> stack = push(pdg, sources, reachable, null);
+			traverse(pdg, reachable, stack, PARAM_IN_CALL, false, null);
+			stack.addAll(reachable);
+			traverse(pdg, reachable, stack, PARAM_OUT, false, null);
+			final Set<Vertex> marked = new HashSet<>();
+			stack = push(pdg, sinks, marked, reachable);
+			traverse(pdg, marked, stack, PARAM_OUT, true, reachable);
+			stack.addAll(marked);
+			traverse(pdg, marked, stack, PARAM_IN_CALL, true, reachable);
+			return marked;
+		}
+		final FrozenPDG g = FrozenPDG.of(pdg);
+		final Scratch s = SCRATCH.get().reset(g.vertexCount());
+		s.push(g, sources);
+		forwardSlice(g, s, PARAM_IN_CALL);
+		s.pushMarked();
+		forwardSlice(g, s, PARAM_OUT);
+		final BitSet reachable = s.swapMarks();
+		s.push(g, sinks, reachable);
+		backwardSlice(g, s, PARAM_OUT, reachable);
+		s.pushMarked();
+		backwardSlice(g, s, PARAM_IN_CALL, reachable);
+		return s.result(g);
+	}
+
+	// Marks everything reachable forwards from the stack through edges not in the excluded mask.
+	private static void forwardSlice(final FrozenPDG g, final Scratch s, final int excluded) {
+		final BitSet marks = s.marks;
+		final int[] stack = s.stack;
+		int sp = s.sp;
+		while (sp > 0) {
+			final int v = stack[--sp];
+			for (int e = g.firstOut(v); e < g.firstOut(v + 1); e++) {
+				if (excludes(excluded, g.typeOrdinal(e)))
+					continue;
+				final int w = g.target(e);
+				if (!marks.get(w)) {
+					marks.set(w);
+					stack[sp++] = w;
+				}
+			}
+		}
+		s.sp = sp;
+	}
+
+	// One backward slice per criterion, in the same order. The criteria are
+	// sliced together: every vertex is labeled with the criteria whose slice it
+	// belongs to, propagating the labels once over the strongly connected
+	// components of each phase.
+	public static List<Set<Vertex>> backwardAll(final Graph<Vertex, Edge> pdg, final List<Set<Vertex>> criteria) {
+		return sliceAll(FrozenPDG.of(pdg), criteria, true);
+	}
+
+	public static List<Set<Vertex>> forwardAll(final Graph<Vertex, Edge> pdg, final List<Set<Vertex>> criteria) {
+		return sliceAll(FrozenPDG.of(pdg), criteria, false);
+	}
+
+	private static List<Set<Vertex>> sliceAll(final FrozenPDG g, final List<Set<Vertex>> criteria,
+			final boolean backward) {
+		final List<Set<Vertex>> result = new ArrayList<>(criteria.size());
+		final int n = g.vertexCount();
+		for (int from = 0; from < criteria.size(); from += BATCH) {
+			final int to = Math.min(criteria.size(), from + BATCH);
+			final int words = (to - from + 63) >>> 6;
+			final long[] labels = new long[n * words];
+			for (int c = from; c < to; c++) {
+				for (final Vertex v : criteria.get(c)) {
+					final int i = g.indexOf(v);
+					if (i < 0)
+						throw new IllegalArgumentException("no such vertex in graph: " + v);
+					labels[i * words + ((c - from) >>> 6)] |= 1L << (c - from);
+				}
+			}
+			if (backward) {
+				propagate(g, labels, words, PARAM_OUT, true);
+				propagate(g, labels, words, PARAM_IN_CALL, true);
+			} else {
+				propagate(g, labels, words, PARAM_IN_CALL, false);
+				propagate(g, labels, words, PARAM_OUT, false);
+			}
+			final int[] sizes = new int[to - from];
+			for (int i = 0; i < n; i++) {
+				for (int w = 0; w < words; w++) {
+					long bits = labels[i * words + w];
+					while (bits != 0) {
+						sizes[(w << 6) + Long.numberOfTrailingZeros(bits)]++;
+						bits &= bits - 1;
+					}
+				}
+			}
+			final List<Set<Vertex>> slices = new ArrayList<>(to - from);
+			for (int c = from; c < to; c++)
+				slices.add(new HashSet<>(sizes[c - from] * 2));
+			for (int i = 0; i < n; i++) {
+				for (int w = 0; w < words; w++) {
+					long bits = labels[i * words + w];
+					while (bits != 0) {
+						slices.get((w << 6) + Long.numberOfTrailingZeros(bits)).add(g.vertex(i));
+						bits &= bits - 1;
+					}
+				}
+			}
+			result.addAll(slices);
+		}
 		return result;
 	}
 
-	private static Set<Vertex> forwardSlice(final PDG pdg, final Set<Vertex> S, final Set<EdgeType> kinds) {
-		final Set<Vertex> result = new HashSet<>();
-		final Set<Vertex> worklist = new HashSet<>(S);
-		while (!worklist.isEmpty()) {
-			final Vertex v = next(worklist);
-			result.add(v);
-			final Set<Vertex> w = outgoing(pdg, result, v, kinds);
-			worklist.addAll(w);
+	// Every vertex takes the labels of the vertices it reaches through edges not in
+	// the excluded mask, following successors for backward slices and predecessors
+	// for forward slices. Tarjan's algorithm finishes the components a component
+	// reaches before the component itself, so one pass in that order suffices.
+	private static void propagate(final FrozenPDG g, final long[] labels, final int words, final int excluded,
+			final boolean backward) {
+		final int n = g.vertexCount();
+		final int[] idx = new int[n];
+		final int[] low = new int[n];
+		final int[] comp = new int[n];
+		Arrays.fill(idx, -1);
+		Arrays.fill(comp, -1);
+		final int[] sccStack = new int[n];
+		final int[] callStack = new int[n];
+		final int[] callPos = new int[n];
+		final long[] acc = new long[words];
+		int counter = 0, comps = 0, ssp = 0, csp = 0;
+		for (int r = 0; r < n; r++) {
+			if (idx[r] >= 0)
+				continue;
+			idx[r] = low[r] = counter++;
+			sccStack[ssp++] = r;
+			callStack[csp] = r;
+			callPos[csp++] = first(g, r, backward);
+			while (csp > 0) {
+				final int v = callStack[csp - 1];
+				final int p = callPos[csp - 1];
+				if (p < first(g, v + 1, backward)) {
+					callPos[csp - 1]++;
+					if (excludes(excluded, typeAt(g, p, backward)))
+						continue;
+					final int w = neighborAt(g, p, backward);
+					if (idx[w] < 0) {
+						idx[w] = low[w] = counter++;
+						sccStack[ssp++] = w;
+						callStack[csp] = w;
+						callPos[csp++] = first(g, w, backward);
+					} else if (comp[w] < 0) {
+						low[v] = Math.min(low[v], idx[w]);
+					}
+					continue;
+				}
+				csp--;
+				if (csp > 0)
+					low[callStack[csp - 1]] = Math.min(low[callStack[csp - 1]], low[v]);
+				if (low[v] != idx[v])
+					continue;
+				// Component of v, the components it reaches are done.
+				int top = ssp;
+				do {
+					comp[sccStack[--ssp]] = comps;
+				} while (sccStack[ssp] != v);
+				Arrays.fill(acc, 0L);
+				for (int k = ssp; k < top; k++) {
+					final int x = sccStack[k];
+					or(acc, labels, x * words, words);
+					for (int q = first(g, x, backward); q < first(g, x + 1, backward); q++) {
+						if (excludes(excluded, typeAt(g, q, backward)))
+							continue;
+						final int y = neighborAt(g, q, backward);
+						if (comp[y] != comps)
+							or(acc, labels, y * words, words);
+					}
+				}
+				for (int k = ssp; k < top; k++)
+					System.arraycopy(acc, 0, labels, sccStack[k] * words, words);
+				comps++;
+			}
+		}
+	}
+
+	private static void or(final long[] acc, final long[] labels, final int base, final int words) {
+		for (int w = 0; w < words; w++)
+			acc[w] |= labels[base + w];
+	}
+
+	// Adjacency of the graph that the labels are propagated against: successors
+	// for backward slices, predecessors for forward slices.
+	private static int first(final FrozenPDG g, final int v, final boolean backward) {
+		return backward ? g.firstOut(v) : g.firstIn(v);
+	}
+
+	private static int neighborAt(final FrozenPDG g, final int p, final boolean backward) {
+		return backward ? g.target(p) : g.inSource(p);
+	}
+
+	private static int typeAt(final FrozenPDG g, final int p, final boolean backward) {
+		return g.typeOrdinal(backward ? p : g.inEdge(p));
+	}
+
+	private static boolean isIndexed(final Graph<Vertex, Edge> g) {
+		return g instanceof PDG || g instanceof FrozenPDG;
+	}
+
+	// Marks the given vertices that are within the given ones, all of them if
+	// null, and returns them as a stack.
+	private static Deque<Vertex> push(final Graph<Vertex, Edge> g, final Set<Vertex> S, final Set<Vertex> marked,
+			final Set<Vertex> within) {
+		final Deque<Vertex> result = new ArrayDeque<>();
+		for (final Vertex v : S) {
+			if (!g.containsVertex(v))
+				throw new IllegalArgumentException("no such vertex in graph: " + v);
+			if ((within == null || within.contains(v)) && marked.add(v))
+				result.push(v);
 		}
 		return result;
 	}
 
-	private static Set<Vertex> outgoing(final PDG pdg, final Collection<Vertex> marked, final Vertex v,
-			final Set<EdgeType> kinds) {
-		final Set<Vertex> result = new HashSet<>();
-		final Set<Edge> edges = pdg.outgoingEdgesOf(v);
-		for (final Edge e : edges) {
-			if (!kinds.contains(e.getType()) && !marked.contains(e.getTarget()))
-				result.add(e.getTarget());
+	// Marks everything reachable from the stack, backwards or forwards, through
+	// edges not in the excluded mask, without leaving the given vertices unless null.
+	private static void traverse(final Graph<Vertex, Edge> g, final Set<Vertex> marked, final Deque<Vertex> stack,
+			final int excluded, final boolean backward, final Set<Vertex> within) {
+		while (!stack.isEmpty()) {
+			final Vertex v = stack.pop();
+			for (final Edge e : backward ? g.incomingEdgesOf(v) : g.outgoingEdgesOf(v)) {
+				if (excludes(excluded, e.getType() == null ? -1 : e.getType().ordinal()))
+					continue;
+				final Vertex u = backward ? g.getEdgeSource(e) : g.getEdgeTarget(e);
+				if ((within == null || within.contains(u)) && marked.add(u))
+					stack.push(u);
+			}
 		}
+	}
+
+	private static int mask(final EdgeType... kinds) {
+		int result = 0;
+		for (final EdgeType k : kinds)
+			result |= 1 << k.ordinal();
 		return result;
 	}
 
-	private static Vertex next(final Set<Vertex> S) {
-		final Iterator<Vertex> it = S.iterator();
-		final Vertex result = it.next();
-		it.remove();
+	private static int mask(final Set<EdgeType> kinds) {
+		int result = 0;
+		for (final EdgeType k : kinds)
+			if (k != null)
+				result |= 1 << k.ordinal();
 		return result;
 	}
 
+	private static boolean excludes(final int mask, final int typeOrdinal) {
+		return typeOrdinal >= 0 && (mask & (1 << typeOrdinal)) != 0;
+	}
+
+	private static class Scratch {
+
+		BitSet marks = new BitSet();
+		BitSet spare = new BitSet();
+		int[] stack = new int[0];
+		int sp;
+
+		Scratch reset(final int n) {
+			marks.clear();
+			if (stack.length < n)
+				stack = new int[n];
+			sp = 0;
+			return this;
+		}
+
+		void push(final FrozenPDG g, final Set<Vertex> S) {
+			push(g, S, null);
+		}
+
+		// Pushes the given vertices that are within the given ones, all of them if null.
+		void push(final FrozenPDG g, final Set<Vertex> S, final BitSet within) {
+			for (final Vertex v : S) {
+				final int i = g.indexOf(v);
+				if (i < 0)
+					throw new IllegalArgumentException("no such vertex in graph: " + v);
+				if (!marks.get(i) && (within == null || within.get(i))) {
+					marks.set(i);
+					stack[sp++] = i;
+				}
+			}
+		}
+
+		// Hands over the current marks and starts over with none.
+		BitSet swapMarks() {
+			final BitSet result = marks;
+			marks = spare;
+			marks.clear();
+			spare = result;
+			sp = 0;
+			return result;
+		}
+
+		void pushMarked() {
+			for (int i = marks.nextSetBit(0); i >= 0; i = marks.nextSetBit(i + 1))
+				stack[sp++] = i;
+		}
+
+		Set<Vertex> result(final FrozenPDG g) {
+			final Set<Vertex> result = new HashSet<>(marks.cardinality() * 2);
+			for (int i = marks.nextSetBit(0); i >= 0; i = marks.nextSetBit(i + 1))
+				result.add(g.vertex(i));
+			return result;
+		}
+
+	}
+
 }
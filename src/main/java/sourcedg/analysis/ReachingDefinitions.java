@@ -0,0 +1,203 @@
+package sourcedg.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.Graph;
+
+import sourcedg.graph.Edge;
+import sourcedg.graph.SymbolTable;
+import sourcedg.graph.Vertex;
+
+/*
+ * Reaching definitions over a CFG. Definitions are numbered per CFG and the
+ * IN/OUT sets are bit vectors, solved with a worklist in reverse postorder.
+ */
+public class ReachingDefinitions {
+
+	// Vertex -> position in reverse postorder
+	private final Map<Vertex, Integer> index;
+	// Definition number -> vertex
+	private final Vertex[] defs;
+	// Variable symbol -> bit vector of its definitions
+	private final long[][] varDefs;
+	private final int words;
+	private final long[] in;
+
+	public ReachingDefinitions(final Graph<Vertex, Edge> cfg) {
+		final Vertex[] order = reversePostorder(cfg);
+		final int n = order.length;
+		index = new HashMap<>(n * 2);
+		for (int i = 0; i < n; i++)
+			index.put(order[i], i);
+
+		// Number definitions
+		final int[] defOf = new int[n];
+		final List<Vertex> defLst = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			defOf[i] = -1;
+			if (order[i].getDef() != SymbolTable.NONE) {
+				defOf[i] = defLst.size();
+				defLst.add(order[i]);
+			}
+		}
+		defs = defLst.toArray(new Vertex[defLst.size()]);
+		words = (defs.length + 63) >>> 6;
+
+		// Kill sets per variable
+		int maxVar = 0;
+		for (final Vertex def : defs)
+			maxVar = Math.max(maxVar, def.getDef());
+		varDefs = new long[maxVar + 1][];
+		for (int d = 0; d < defs.length; d++) {
+			final int var = defs[d].getDef();
+			if (varDefs[var] == null)
+				varDefs[var] = new long[words];
+			varDefs[var][d >>> 6] |= 1L << d;
+		}
+
+		// Predecessors and successors in compressed form
+		final int[] predStart = new int[n + 1];
+		final int[] succStart = new int[n + 1];
+		for (final Edge e : cfg.edgeSet()) {
+			predStart[index.get(cfg.getEdgeTarget(e)) + 1]++;
+			succStart[index.get(cfg.getEdgeSource(e)) + 1]++;
+		}
+		for (int i = 0; i < n; i++) {
+			predStart[i + 1] += predStart[i];
+			succStart[i + 1] += succStart[i];
+		}
+		final int[] preds = new int[predStart[n]];
+		final int[] succs = new int[succStart[n]];
+		final int[] predPos = Arrays.copyOf(predStart, n);
+		final int[] succPos = Arrays.copyOf(succStart, n);
+		for (final Edge e : cfg.edgeSet()) {
+			final int s = index.get(cfg.getEdgeSource(e));
+			final int t = index.get(cfg.getEdgeTarget(e));
+			preds[predPos[t]++] = s;
+			succs[succPos[s]++] = t;
+		}
+
+		in = new long[n * words];
+		solve(n, defOf, predStart, preds, succStart, succs);
+	}
+
+	private void solve(final int n, final int[] defOf, final int[] predStart, final int[] preds,
+			final int[] succStart, final int[] succs) {
+		final long[] out = new long[n * words];
+		final BitSet pending = new BitSet(n);
+		pending.set(0, n);
+		int i = 0;
+		while (!pending.isEmpty()) {
+			i = pending.nextSetBit(i);
+			if (i < 0)
+				i = pending.nextSetBit(0);
+			pending.clear(i);
+			final int base = i * words;
+			// IN = union of the OUT of predecessors
+			for (int k = predStart[i]; k < predStart[i + 1]; k++) {
+				final int pBase = preds[k] * words;
+				for (int w = 0; w < words; w++)
+					in[base + w] |= out[pBase + w];
+			}
+			// OUT = GEN + (IN - KILL)
+			final int d = defOf[i];
+			final long[] kill = d >= 0 ? varDefs[defs[d].getDef()] : null;
+			boolean changes = false;
+			for (int w = 0; w < words; w++) {
+				long o = in[base + w];
+				if (kill != null)
+					o &= ~kill[w];
+				if (d >= 0 && w == d >>> 6)
+					o |= 1L << d;
+				if (o != out[base + w]) {
+					out[base + w] = o;
+					changes = true;
+				}
+			}
+			if (changes)
+				for (int k = succStart[i]; k < succStart[i + 1]; k++)
+					pending.set(succs[k]);
+			i++;
+		}
+	}
+
+	// Definitions of the given variable that reach the given vertex.
+	public List<Vertex> reaching(final Vertex v, final int var) {
+		final Integer i = index.get(v);
+		if (i == null || var <= SymbolTable.NONE || var >= varDefs.length || varDefs[var] == null)
+			return Collections.emptyList();
+		final long[] mask = varDefs[var];
+		final List<Vertex> result = new ArrayList<>();
+		final int base = i * words;
+		for (int w = 0; w < words; w++)
+			collect(in[base + w] & mask[w], w, result);
+		return result;
+	}
+
+	// All definitions that reach the given vertex.
+	public List<Vertex> in(final Vertex v) {
+		final Integer i = index.get(v);
+		if (i == null)
+			return Collections.emptyList();
+		final List<Vertex> result = new ArrayList<>();
+		final int base = i * words;
+		for (int w = 0; w < words; w++)
+			collect(in[base + w], w, result);
+		return result;
+	}
+
+	private void collect(long bits, final int w, final List<Vertex> result) {
+		while (bits != 0) {
+			result.add(defs[(w << 6) + Long.numberOfTrailingZeros(bits)]);
+			bits &= bits - 1;
+		}
+	}
+
+	private static Vertex[] reversePostorder(final Graph<Vertex, Edge> cfg) {
+		final List<Vertex> post = new ArrayList<>(cfg.vertexSet().size());
+		final Set<Vertex> visited = new HashSet<>();
+		// Start from the entries, then pick up unreachable components.
+		for (final Vertex v : cfg.vertexSet())
+			if (cfg.inDegreeOf(v) == 0)
+				postorder(cfg, v, visited, post);
+		for (final Vertex v : cfg.vertexSet())
+			postorder(cfg, v, visited, post);
+		Collections.reverse(post);
+		return post.toArray(new Vertex[post.size()]);
+	}
+
+	private static void postorder(final Graph<Vertex, Edge> cfg, final Vertex root, final Set<Vertex> visited,
+			final List<Vertex> post) {
+		if (!visited.add(root))
+			return;
+		final Deque<Vertex> vtxStack = new ArrayDeque<>();
+		final Deque<Iterator<Edge>> itStack = new ArrayDeque<>();
+		vtxStack.push(root);
+		itStack.push(cfg.outgoingEdgesOf(root).iterator());
+		while (!vtxStack.isEmpty()) {
+			final Iterator<Edge> it = itStack.peek();
+			if (it.hasNext()) {
+				final Vertex w = cfg.getEdgeTarget(it.next());
+				if (visited.add(w)) {
+					vtxStack.push(w);
+					itStack.push(cfg.outgoingEdgesOf(w).iterator());
+				}
+			} else {
+				post.add(vtxStack.pop());
+				itStack.pop();
+			}
+		}
+	}
+
+}
@@ -0,0 +1,94 @@
+package sourcedg.analysis;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import sourcedg.graph.Edge;
+import sourcedg.graph.EdgeType;
+import sourcedg.graph.PDG;
+import sourcedg.graph.Vertex;
+import sourcedg.graph.VertexType;
+
+/*
+ * Summary edges of Horwitz, Reps and Binkley, Interprocedural slicing using
+ * dependence graphs (TOPLAS 1990):
+ * ACTUAL_IN -> ACTUAL_OUT at a call site whenever the corresponding FORMAL_IN
+ * reaches the callee's FORMAL_OUT through a same-level path, that is, one that
+ * does not go through CALL, PARAM_IN or PARAM_OUT edges but may go through the
+ * summary edges of nested calls. Backward and forward slices can then cross a
+ * call site without descending into the callee, and only through the arguments
+ * the result depends on.
+ */
+public class SummaryEdges {
+
+	// Adds the summary edges to a PDG with its interprocedural edges, returns how many.
+	public static int compute(final PDG pdg) {
+		int added = 0;
+		// Vertex -> FORMAL_OUT vertices it reaches through same-level paths.
+		final Map<Vertex, Set<Vertex>> reached = new HashMap<>();
+		final Deque<Vertex[]> worklist = new ArrayDeque<>();
+		for (final Edge e : pdg.edgesOfType(EdgeType.PARAM_OUT))
+			reach(reached, worklist, e.getSource(), e.getSource());
+		while (!worklist.isEmpty()) {
+			final Vertex[] pathEdge = worklist.pop();
+			final Vertex v = pathEdge[0];
+			final Vertex formalOut = pathEdge[1];
+			if (VertexType.FORMAL_IN.equals(v.getType())) {
+				for (final Edge paramIn : pdg.incomingEdgesOf(v)) {
+					if (paramIn.getType() != EdgeType.PARAM_IN)
+						continue;
+					final Vertex actualIn = paramIn.getSource();
+					final Vertex actualOut = actualOut(pdg, actualIn, formalOut);
+					if (actualOut == null || hasEdge(pdg, actualIn, actualOut, EdgeType.SUMMARY))
+						continue;
+					pdg.addEdge(actualIn, actualOut, new Edge(actualIn, actualOut, EdgeType.SUMMARY));
+					added++;
+					final Set<Vertex> outs = reached.get(actualOut);
+					if (outs != null)
+						for (final Vertex out : new ArrayList<>(outs))
+							reach(reached, worklist, actualIn, out);
+				}
+			}
+			for (final Edge e : pdg.incomingEdgesOf(v)) {
+				if (!isInterprocedural(e.getType()))
+					reach(reached, worklist, e.getSource(), formalOut);
+			}
+		}
+		return added;
+	}
+
+	private static void reach(final Map<Vertex, Set<Vertex>> reached, final Deque<Vertex[]> worklist,
+			final Vertex v, final Vertex formalOut) {
+		if (reached.computeIfAbsent(v, k -> new HashSet<>(2)).add(formalOut))
+			worklist.push(new Vertex[] { v, formalOut });
+	}
+
+	// ACTUAL_OUT of the call site of the given argument, if it receives the given FORMAL_OUT.
+	private static Vertex actualOut(final PDG pdg, final Vertex actualIn, final Vertex formalOut) {
+		for (final Edge e : pdg.incomingEdgesOf(actualIn)) {
+			if (e.getType() != EdgeType.CTRL_TRUE)
+				continue;
+			final Vertex result = pdg.actualOut(e.getSource());
+			if (result != null && hasEdge(pdg, formalOut, result, EdgeType.PARAM_OUT))
+				return result;
+		}
+		return null;
+	}
+
+	private static boolean hasEdge(final PDG pdg, final Vertex source, final Vertex target, final EdgeType type) {
+		for (final Edge e : pdg.getAllEdges(source, target))
+			if (e.getType() == type)
+				return true;
+		return false;
+	}
+
+	private static boolean isInterprocedural(final EdgeType type) {
+		return type == EdgeType.CALL || type == EdgeType.PARAM_IN || type == EdgeType.PARAM_OUT;
+	}
+
+}
@@ -49,6 +49,7 @@ import sourcedg.graph.CFG;
 import sourcedg.graph.Edge;
 import sourcedg.graph.EdgeType;
 import sourcedg.graph.PDG;
+import sourcedg.graph.SymbolTable;
 import sourcedg.graph.Vertex;
 import sourcedg.graph.VertexCreator;
 
@@ -94,6 +95,8 @@ public class CDGBuilder {
 		final List<Node> children = cu.getChildNodes();
 		for (final Node n : children)
 			_build(n);
+		for (final CFG g : cfgBuilder.getCfgs())
+			cdg.addCfg(g);
 	}
 
 	private ControlFlow _build(final Node n) {
@@ -325,16 +328,16 @@ public class CDGBuilder {
 			ArrayCreationExpr expr = (ArrayCreationExpr) init.get();
 			NodeList<ArrayCreationLevel> levels = expr.getLevels();
 			List<ControlFlow> flows = new ArrayList<>();
-			Set<String> arrRefs = new HashSet<>();
+			int[] arrRefs = SymbolTable.EMPTY;
 			for (ArrayCreationLevel lvl : levels) {
 				ControlFlow arrIdxCf = arrayIdx(v, lvl);
 				flows.add(arrIdxCf);
-				arrRefs.addAll(arrIdxCf.getIn().getUses());
+				arrRefs = SymbolTable.union(arrRefs, arrIdxCf.getIn().getUses());
 			}
 			flows.add(result);
 			result = cfgBuilder.seq(flows);
 			// Uses are set in the ARRAY_IDX vertices
-			v.getUses().removeAll(arrRefs);
+			v.removeUses(arrRefs);
 		}
 
 		return result;
@@ -349,7 +352,7 @@ public class CDGBuilder {
 		final Expression target = n.getTarget();
 		if (target instanceof ArrayAccessExpr) {
 			ArrayAccessExpr arrAccess = (ArrayAccessExpr) target;
-			v.getUses().addAll(VertexCreator.names(arrAccess.getIndex()));
+			v.addUses(vtxCreator.uses(arrAccess.getIndex()));
 //			Expression idx = arrAccess.getIndex();
 //			result = cfgBuilder.seq(arrayIdx(v, idx), result);
 		}
@@ -365,7 +368,7 @@ public class CDGBuilder {
 			ControlFlow arrIdxCf = arrayIdx(v, idx);
 			result = cfgBuilder.seq(arrIdxCf, result);
 			// Uses are set in the ARRAY_IDX vertex
-			v.getUses().removeAll(arrIdxCf.getIn().getUses());
+			v.removeUses(arrIdxCf.getIn().getUses());
 		}
 		return result;
 	}
@@ -377,9 +380,7 @@ public class CDGBuilder {
 		final Optional<Expression> scope = call.getScope();
 		if (scope.isPresent()) {
 			String scopeVar = scope.get().toString();
-			final Set<String> uses = new HashSet<>();
-			uses.add(scopeVar);
-			v.setUses(uses);
+			v.setUses(new int[] { vtxCreator.getSymbols().intern(scopeVar) });
 		}
 		final ControlFlow inFlow = args(v, call);
 		final ControlFlow outFlow = actualOut(v, n);
@@ -628,7 +629,7 @@ public class CDGBuilder {
 			final Vertex a = argumentExpr(e);
 
 			// Remove uses in parent node.
-			v.getUses().removeAll(v.getUses());
+			v.clearUses();
 
 			addEdge(EdgeType.CTRL_TRUE, v, a);
 			result.add(new ControlFlow(a, a));
@@ -687,6 +688,10 @@ public class CDGBuilder {
 		return cfgBuilder.getCfgs();
 	}
 
+	public SymbolTable getSymbols() {
+		return vtxCreator.getSymbols();
+	}
+
 	public long getVertexId() {
 		return vtxCreator.getId();
 	}
@@ -0,0 +1,124 @@
+package sourcedg.builder;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import com.github.javaparser.JavaParser;
+
+/*
+ * Builds the PDGs of a collection of files in parallel. Files are spread over a
+ * fork-join pool, every worker thread reuses its own parser, and every file is
+ * given its own range of vertex IDs so that IDs do not overlap across the corpus.
+ */
+public class CorpusBuilder {
+
+	// Number of vertex IDs reserved for every file.
+	public static final long DEFAULT_ID_RANGE = 1L << 24;
+
+	private final PDGBuilderConfig config;
+	private int parallelism;
+	private long idRange;
+
+	public CorpusBuilder(final PDGBuilderConfig config) {
+		this.config = config;
+		parallelism = Runtime.getRuntime().availableProcessors();
+		idRange = DEFAULT_ID_RANGE;
+	}
+
+	public CorpusBuilder parallelism(final int parallelism) {
+		if (parallelism < 1)
+			throw new IllegalArgumentException("Parallelism must be positive (" + parallelism + ")");
+		this.parallelism = parallelism;
+		return this;
+	}
+
+	public CorpusBuilder idRange(final long idRange) {
+		if (idRange < 1)
+			throw new IllegalArgumentException("ID range must be positive (" + idRange + ")");
+		this.idRange = idRange;
+		return this;
+	}
+
+	public CorpusResult build(final Collection<Path> paths) {
+		final List<Path> files = new ArrayList<>(paths);
+		final PDGBuilder[] builders = new PDGBuilder[files.size()];
+		final Throwable[] failures = new Throwable[files.size()];
+		final ThreadLocal<JavaParser> parsers = ThreadLocal.withInitial(JavaParser::new);
+		final ForkJoinPool pool = new ForkJoinPool(parallelism);
+		try {
+			pool.invoke(new BuildTask(files, builders, failures, parsers, 0, files.size()));
+		} finally {
+			pool.shutdown();
+		}
+		final CorpusResult result = new CorpusResult();
+		for (int i = 0; i < files.size(); i++) {
+			if (failures[i] != null)
+				result.addFailure(files.get(i), failures[i]);
+			else
+				result.addBuilder(files.get(i), builders[i]);
+		}
+		return result;
+	}
+
+	private PDGBuilder build(final Path p, final long firstId, final JavaParser javaParser) throws Exception {
+		final PDGBuilder builder = new PDGBuilder(config.copy().initialVertexId(firstId), javaParser);
+		try (InputStream in = Files.newInputStream(p)) {
+			builder.build(in);
+		}
+		final long used = builder.getVertexId() - firstId;
+		if (used > idRange)
+			throw new IllegalStateException(
+					"Vertex ID range exceeded for " + p + " (" + used + " IDs vs " + idRange + " reserved)");
+		builder.getPDG().setPathToProgram(p.toString());
+		return builder;
+	}
+
+	private class BuildTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 2964013542719084735L;
+
+		private final List<Path> files;
+		private final PDGBuilder[] builders;
+		private final Throwable[] failures;
+		private final ThreadLocal<JavaParser> parsers;
+		private final int from, to;
+
+		BuildTask(final List<Path> files, final PDGBuilder[] builders, final Throwable[] failures,
+				final ThreadLocal<JavaParser> parsers, final int from, final int to) {
+			this.files = files;
+			this.builders = builders;
+			this.failures = failures;
+			this.parsers = parsers;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				final int mid = (from + to) >>> 1;
+				invokeAll(new BuildTask(files, builders, failures, parsers, from, mid),
+						new BuildTask(files, builders, failures, parsers, mid, to));
+				return;
+			}
+			for (int i = from; i < to; i++) {
+				try {
+					final long firstId = Math.addExact(config.getInitialVertexId(), Math.multiplyExact(i, idRange));
+					builders[i] = build(files.get(i), firstId, parsers.get());
+				} catch (final StackOverflowError | Exception e) {
+					// A deeply nested source can overflow the stack of the parser or the
+					// builder, only that file fails.
+					failures[i] = e;
+				}
+			}
+		}
+
+	}
+
+}
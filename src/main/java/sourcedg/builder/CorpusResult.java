@@ -0,0 +1,41 @@
+package sourcedg.builder;
+
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Per-file outcome of a corpus build, in the order the files were given.
+ */
+public class CorpusResult {
+
+	private final Map<Path, PDGBuilder> builders;
+	private final Map<Path, Throwable> failures;
+
+	CorpusResult() {
+		builders = new LinkedHashMap<>();
+		failures = new LinkedHashMap<>();
+	}
+
+	void addBuilder(final Path p, final PDGBuilder builder) {
+		builders.put(p, builder);
+	}
+
+	void addFailure(final Path p, final Throwable e) {
+		failures.put(p, e);
+	}
+
+	// Builders of the files that were built successfully.
+	public Map<Path, PDGBuilder> getBuilders() {
+		return builders;
+	}
+
+	public Map<Path, Throwable> getFailures() {
+		return failures;
+	}
+
+	public boolean isComplete() {
+		return failures.isEmpty();
+	}
+
+}
@@ -0,0 +1,126 @@
+package sourcedg.builder;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/*
+ * Java files of a corpus, either the entries of a zip archive or the files under
+ * a directory. Every file is given by its name, the path relative to the root
+ * with '/' separators, and read as a stream to be handed to the parser along
+ * with the charset of the corpus, so no copy of its contents is ever made.
+ * Files can be opened from several threads at once.
+ */
+public abstract class CorpusSource implements Closeable {
+
+	private final Charset charset;
+
+	private CorpusSource(final Charset charset) {
+		this.charset = charset;
+	}
+
+	// A directory, or else a zip archive.
+	public static CorpusSource of(final Path p, final Charset charset) throws IOException {
+		if (Files.isDirectory(p))
+			return directory(p, charset);
+		return zip(p, charset);
+	}
+
+	public static CorpusSource zip(final Path p, final Charset charset) throws IOException {
+		// Entry names are read as UTF-8, the charset is only for the contents.
+		return new Zip(new ZipFile(p.toFile()), charset);
+	}
+
+	public static CorpusSource directory(final Path p, final Charset charset) throws IOException {
+		if (!Files.isDirectory(p))
+			throw new NoSuchFileException(p.toString());
+		return new Directory(p, charset);
+	}
+
+	public Charset getCharset() {
+		return charset;
+	}
+
+	// Names of the Java files, sorted.
+	public abstract List<String> names() throws IOException;
+
+	// Contents of the given file, to be closed by the caller.
+	public abstract InputStream open(String name) throws IOException;
+
+	@Override
+	public void close() throws IOException {
+	}
+
+	private static class Zip extends CorpusSource {
+
+		private final ZipFile zip;
+
+		Zip(final ZipFile zip, final Charset charset) {
+			super(charset);
+			this.zip = zip;
+		}
+
+		@Override
+		public List<String> names() {
+			final List<String> result = new ArrayList<>();
+			for (final Enumeration<? extends ZipEntry> it = zip.entries(); it.hasMoreElements(); ) {
+				final ZipEntry e = it.nextElement();
+				if (!e.isDirectory() && e.getName().endsWith(".java"))
+					result.add(e.getName());
+			}
+			result.sort(null);
+			return result;
+		}
+
+		@Override
+		public InputStream open(final String name) throws IOException {
+			final ZipEntry e = zip.getEntry(name);
+			if (e == null || e.isDirectory())
+				throw new NoSuchFileException(name);
+			return zip.getInputStream(e);
+		}
+
+		@Override
+		public void close() throws IOException {
+			zip.close();
+		}
+
+	}
+
+	private static class Directory extends CorpusSource {
+
+		private final Path root;
+
+		Directory(final Path root, final Charset charset) {
+			super(charset);
+			this.root = root;
+		}
+
+		@Override
+		public List<String> names() throws IOException {
+			try (Stream<Path> files = Files.walk(root)) {
+				return files.filter(p -> Files.isRegularFile(p) && p.toString().endsWith(".java"))
+						.map(p -> root.relativize(p).toString().replace(root.getFileSystem().getSeparator(), "/"))
+						.sorted().collect(Collectors.toList());
+			}
+		}
+
+		@Override
+		public InputStream open(final String name) throws IOException {
+			return Files.newInputStream(root.resolve(name));
+		}
+
+	}
+
+}
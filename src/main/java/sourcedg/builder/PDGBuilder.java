@@ -2,16 +2,16 @@ package sourcedg.builder;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.charset.Charset;
 import java.nio.file.Path;
+import java.util.Collection;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.stream.Collectors;
 
 import org.jgrapht.Graph;
 
@@ -22,10 +22,13 @@ import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.comments.Comment;
 import com.github.javaparser.utils.Pair;
 
+import sourcedg.analysis.ReachingDefinitions;
+import sourcedg.analysis.SummaryEdges;
 import sourcedg.graph.CFG;
 import sourcedg.graph.Edge;
 import sourcedg.graph.EdgeType;
 import sourcedg.graph.PDG;
+import sourcedg.graph.SymbolTable;
 import sourcedg.graph.Vertex;
 import sourcedg.graph.VertexCreator;
 import sourcedg.normalization.Normalizer;
@@ -52,11 +55,27 @@ public class PDGBuilder {
 		this.javaParser = new JavaParser();
 	}
 
+	// Leaves the logger untouched so that builders can be created from several threads.
+	PDGBuilder(PDGBuilderConfig config, final JavaParser javaParser) {
+		this.config = config;
+		this.javaParser = javaParser;
+	}
+
+	// Builds every file in parallel with this builder's configuration.
+	public CorpusResult buildAll(final Collection<Path> in) {
+		return new CorpusBuilder(config).build(in);
+	}
+
 	public void build(final InputStream in) {
 		final CompilationUnit cu = javaParser.parse(in).getResult().get();
 		build(cu);
 	}
 
+	public void build(final InputStream in, final Charset charset) {
+		final CompilationUnit cu = javaParser.parse(in, charset).getResult().get();
+		build(cu);
+	}
+
 	public void build(final Path in) {
 		try {
 			CompilationUnit cu;
@@ -80,10 +99,9 @@ public class PDGBuilder {
 		if (config.isRemoveImports()) {
 			cu.findAll(ImportDeclaration.class).stream().forEach(Node::remove);
 		}
-		if (config.isRemoveComments() || config.isRemoveImports()) {
-			cu = javaParser.parse(cu.toString()).getResult().get();
-		}
-		originalCu = javaParser.parse(cu.toString()).getResult().get();
+		// The source is parsed only once. The original tree is kept as an in-memory copy,
+		// so that line numbers refer to the parsed source.
+		originalCu = cu.clone();
 		if (config.isNormalize()) {
 			final Normalizer normalizer = new Normalizer(cu);
 			cu = normalizer.normalize();
@@ -96,8 +114,10 @@ public class PDGBuilder {
 			computeInterProceduralCalls(cdgBuilder.getMethodParams(), cdgBuilder.getCalls(),
 					cdgBuilder.getMethodFormalOut());
 		cfgs = cdgBuilder.getCfgs();
-		computeDataDependencies();
-		computeOutputDependencies();
+		computeDataAndOutputDependencies();
+		// Summaries need the data dependences inside the callees.
+		if (config.isInterproceduralCalls())
+			SummaryEdges.compute(pdg);
 	}
 
 	private void computeInterProceduralCalls(final HashMap<String, Pair<Vertex, List<Vertex>>> methodParams,
@@ -142,72 +162,37 @@ public class PDGBuilder {
 	}
 
 	// https://dl.acm.org/citation.cfm?id=154268
-	private void computeDataDependencies() {
-		for (final Graph<Vertex, Edge> cfg : cfgs)
-			reachingDefinitions(cfg);
+	// Data and output dependences share one reaching definitions solution.
+	private void computeDataAndOutputDependencies() {
+		final Map<Vertex, ReachingDefinitions> reachingDefs = reachingDefinitions();
 		for (final Vertex v : pdg.vertexSet()) {
-			final Map<String, Set<Vertex>> inDefs = inDefs(v);
-			for (final String use : v.getUses()) {
-				boolean noEdgeForUse = true;
-				final Set<Vertex> inVtcs = inDefs.get(use);
-				if (inVtcs != null) {
-					for (final Vertex inVtx : inVtcs) {
-						pdg.addEdge(inVtx, v, new Edge(inVtx, v, EdgeType.DATA));
-					}
-					noEdgeForUse = false;
+			final ReachingDefinitions rd = reachingDefs.get(v);
+			if (rd == null)
+				continue;
+			for (final int use : v.getUses()) {
+				final List<Vertex> inVtcs = rd.reaching(v, use);
+				for (final Vertex inVtx : inVtcs) {
+					pdg.addEdge(inVtx, v, new Edge(inVtx, v, EdgeType.DATA));
 				}
-				if (noEdgeForUse) {
+				if (inVtcs.isEmpty()) {
 					// TODO: Create initial state vertex
 				}
 			}
-		}
-	}
-
-	private void computeOutputDependencies() {
-		for (final Graph<Vertex, Edge> cfg : cfgs)
-			reachingDefinitions(cfg);
-		for (final Vertex v : pdg.vertexSet()) {
-			final Map<String, Set<Vertex>> inDefs = inDefs(v);
-			String pseudoUse = v.getPseudoUse();
-			final Set<Vertex> inVtcs = inDefs.get(pseudoUse);
-			if (inVtcs != null) {
-				for (final Vertex inVtx : inVtcs) {
-					pdg.addEdge(inVtx, v, new Edge(inVtx, v, EdgeType.OUTPUT));
-				}
+			for (final Vertex inVtx : rd.reaching(v, v.getPseudoUse())) {
+				pdg.addEdge(inVtx, v, new Edge(inVtx, v, EdgeType.OUTPUT));
 			}
 		}
 	}
 
-	private void reachingDefinitions(final Graph<Vertex, Edge> cfg) {
-		boolean changes = true;
-		while (changes) {
-			changes = false;
-			for (final Vertex n : cfg.vertexSet()) {
-				final Set<Vertex> oldOut = n.getOut();
-				final Set<Vertex> oldIn = n.getIn();
-				final Set<Edge> incomingEdges = cfg.incomingEdgesOf(n);
-				final Set<Vertex> pred = incomingEdges.stream().map(e -> e.getSource()).collect(Collectors.toSet());
-				for (final Vertex p : pred)
-					n.getIn().addAll(p.getOut());
-				final Set<Vertex> out = new HashSet<>();
-				final Set<Vertex> diff = new HashSet<>(n.getIn());
-				Set<Vertex> kill = new HashSet<>();
-				if (n.getDef() != null) {
-					out.add(n);
-					kill = n.getIn().stream().filter(v -> v.getDef().equals(n.getDef())).collect(Collectors.toSet());
-				}
-				diff.removeAll(kill);
-				out.addAll(diff);
-				n.setOut(out);
-				// Check if changes
-				changes = changes || !oldIn.equals(n.getIn()) || !oldOut.equals(n.getOut());
-			}
+	// Solves reaching definitions for every CFG, indexed by the vertices of the CFG.
+	private Map<Vertex, ReachingDefinitions> reachingDefinitions() {
+		final Map<Vertex, ReachingDefinitions> result = new HashMap<>();
+		for (final Graph<Vertex, Edge> cfg : cfgs) {
+			final ReachingDefinitions rd = new ReachingDefinitions(cfg);
+			for (final Vertex v : cfg.vertexSet())
+				result.put(v, rd);
 		}
-	}
-
-	private Map<String, Set<Vertex>> inDefs(final Vertex v) {
-		final Set<Vertex> in = v.getIn();
-		return in.stream().collect(Collectors.groupingBy(Vertex::getDef, Collectors.toSet()));
+		return result;
 	}
 
 	public PDG getPDG() {
@@ -239,4 +224,9 @@ public class PDGBuilder {
 		return cdgBuilder.getVertexId();
 	}
 
+	// Variable names behind the def and use symbols of the vertices.
+	public SymbolTable getSymbols() {
+		return cdgBuilder.getSymbols();
+	}
+
 }
@@ -11,7 +11,8 @@ package sourcedg.builder;
  * the PDG the source code line it originated from.
  * 
  * The 'interproceduralCalls' flag will result in the builder including call
- * edges between procedures.
+ * edges between procedures, along with summary edges from the arguments to the
+ * result of every call whose result depends on them.
  * 
  * @author victorjmarin
  *
@@ -83,6 +84,17 @@ public class PDGBuilderConfig {
 		return initialVertexId;
 	}
 
+	PDGBuilderConfig copy() {
+		final PDGBuilderConfig result = new PDGBuilderConfig();
+		result.normalize = normalize;
+		result.keepLines = keepLines;
+		result.removeComments = removeComments;
+		result.removeImports = removeImports;
+		result.interproceduralCalls = interproceduralCalls;
+		result.initialVertexId = initialVertexId;
+		return result;
+	}
+
 	public String toString() {
 		return String.format("[normalize=%s, originalLines=%s, interproceduralCalls=%s]", normalize, keepLines,
 				interproceduralCalls);
@@ -1,10 +1,6 @@
 package sourcedg.graph;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.Comparator;
-import java.util.List;
-import java.util.Optional;
+import java.util.Map;
 
 import org.jgrapht.graph.DefaultDirectedGraph;
 
@@ -15,28 +11,118 @@ public class CFG extends DefaultDirectedGraph<Vertex, Edge> {
    */
   private static final long serialVersionUID = -85173637837652634L;
 
+  // ID -> vertex and cached entry/exit, kept current through addVertex and
+  // removeVertex. The index and exit are rebuilt once the vertices were
+  // renumbered, which bumps version, or once a lookup finds an ID changed from
+  // outside.
+  private transient Map<Long, Vertex> vertexById;
+  private transient boolean duplicateIds;
+  private transient Vertex entry;
+  private transient Vertex exit;
+  // ID of exit when it was found.
+  private transient long exitId;
+  private transient int version;
+  private transient int indexedVersion;
+
   public CFG() {
     super(Edge.class);
   }
 
+  @Override
+  public boolean addVertex(final Vertex v) {
+    final boolean added = super.addVertex(v);
+    if (added) {
+      if (vertexById != null && vertexById.putIfAbsent(v.getId(), v) != null)
+        duplicateIds = true;
+      if (exit != null && v.getId() > exit.getId()) {
+        exit = v;
+        exitId = v.getId();
+      }
+    }
+    return added;
+  }
+
+  @Override
+  public boolean removeVertex(final Vertex v) {
+    final boolean removed = super.removeVertex(v);
+    if (removed) {
+      if (vertexById != null && vertexById.remove(v.getId(), v) && duplicateIds)
+        vertexById = null;
+      if (v == entry)
+        entry = null;
+      if (v == exit)
+        exit = null;
+    }
+    return removed;
+  }
+
+  @Override
+  public Object clone() {
+    final CFG result = (CFG) super.clone();
+    result.vertexById = null;
+    result.entry = null;
+    result.exit = null;
+    result.version = 0;
+    result.indexedVersion = 0;
+    return result;
+  }
+
+  // Called by the PDG sharing the vertices of this CFG once it renumbered them.
+  void renumbered() {
+    version++;
+  }
+
+  private void checkVersion() {
+    if (indexedVersion != version) {
+      vertexById = null;
+      exit = null;
+      indexedVersion = version;
+    }
+  }
+
   public Vertex getEntry() {
-    return vertexSet().stream()
-        .filter(v -> VertexType.ENTRY.equals(v.getType()) || VertexType.INIT.equals(v.getType()))
-        .findFirst().orElse(null);
+    if (entry == null || !isEntry(entry))
+      entry = vertexSet().stream().filter(CFG::isEntry).findFirst().orElse(null);
+    return entry;
   }
 
+  private static boolean isEntry(final Vertex v) {
+    return VertexType.ENTRY.equals(v.getType()) || VertexType.INIT.equals(v.getType());
+  }
+
+  // Vertex with the highest ID, the first one in case of ties. Null if the CFG is empty.
   public Vertex getExit() {
-    final List<Vertex> vtcs = new ArrayList<>(vertexSet());
-    final Comparator<Vertex> cmp = (v1, v2) -> Long.compare(v2.getId(), v1.getId());
-    Collections.sort(vtcs, cmp);
-    return vtcs.get(0);
+    checkVersion();
+    // The exit's own ID was changed from outside.
+    if (exit != null && exit.getId() != exitId)
+      exit = null;
+    if (exit == null) {
+      for (final Vertex v : vertexSet())
+        if (exit == null || v.getId() > exit.getId())
+          exit = v;
+      if (exit != null)
+        exitId = exit.getId();
+    }
+    return exit;
+  }
+
+  private void reindex() {
+    vertexById = PDG.indexById(vertexSet());
+    duplicateIds = vertexById.size() < vertexSet().size();
   }
 
-  public Vertex getVertexWithId(final int id) {
-    final Optional<Vertex> v = vertexSet().stream().filter(u -> u.getId() == id).findFirst();
-    if (v.isPresent())
-      return v.get();
-    return null;
+  public Vertex getVertexWithId(final long id) {
+    checkVersion();
+    if (vertexById == null)
+      reindex();
+    final Vertex v = vertexById.get(id);
+    if (v != null && v.getId() == id)
+      return v;
+    // Missing or mismatched, some ID may have been changed from outside: start
+    // over, along with the exit.
+    reindex();
+    exit = null;
+    return vertexById.get(id);
   }
 
   public int cyclomaticComplexity() {
@@ -2,7 +2,7 @@ package sourcedg.graph;
 
 public enum EdgeType {
 
-	DATA, OUTPUT, CTRL_TRUE, CTRL_FALSE, CALL, PARAM_IN, PARAM_OUT, MEMBER_OF;
+	DATA, OUTPUT, CTRL_TRUE, CTRL_FALSE, CALL, PARAM_IN, PARAM_OUT, MEMBER_OF, SUMMARY;
 
 	public boolean isControl() {
 		return equals(CTRL_TRUE) || equals(CTRL_FALSE);
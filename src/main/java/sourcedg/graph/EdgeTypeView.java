@@ -0,0 +1,315 @@
+package sourcedg.graph;
+
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.jgrapht.Graph;
+import org.jgrapht.GraphType;
+import org.jgrapht.graph.AbstractGraph;
+import org.jgrapht.graph.DefaultGraphType;
+
+/*
+ * Live, read-only view of a PDG restricted to the edges of the given types.
+ * Nothing is copied: the edge set and the incoming/outgoing edges of a vertex
+ * are backed by the PDG's per-type indexes, only edgesOf and the edges between
+ * two vertices are filtered while iterating. Unlike DefaultDirectedGraph, the
+ * view is a multigraph: parallel edges of the selected types are all kept.
+ */
+public class EdgeTypeView extends AbstractGraph<Vertex, Edge> {
+
+	private static final GraphType TYPE = new DefaultGraphType.Builder().directed().allowMultipleEdges(true)
+			.allowSelfLoops(true).weighted(false).modifiable(false).build();
+
+	private final PDG pdg;
+	private final EnumSet<EdgeType> types;
+
+	EdgeTypeView(final PDG pdg, final EnumSet<EdgeType> types) {
+		this.pdg = pdg;
+		this.types = types;
+	}
+
+	public Set<EdgeType> getEdgeTypes() {
+		return Collections.unmodifiableSet(types);
+	}
+
+	private boolean accepts(final Edge e) {
+		return types.contains(e.getType());
+	}
+
+	@Override
+	public Set<Edge> getAllEdges(final Vertex sourceVertex, final Vertex targetVertex) {
+		final Set<Edge> all = pdg.getAllEdges(sourceVertex, targetVertex);
+		if (all == null)
+			return null;
+		final Set<Edge> result = new LinkedHashSet<>();
+		for (final Edge e : all)
+			if (accepts(e))
+				result.add(e);
+		return result;
+	}
+
+	@Override
+	public Edge getEdge(final Vertex sourceVertex, final Vertex targetVertex) {
+		final Set<Edge> all = pdg.getAllEdges(sourceVertex, targetVertex);
+		if (all != null)
+			for (final Edge e : all)
+				if (accepts(e))
+					return e;
+		return null;
+	}
+
+	@Override
+	public Supplier<Vertex> getVertexSupplier() {
+		return null;
+	}
+
+	@Override
+	public Supplier<Edge> getEdgeSupplier() {
+		return null;
+	}
+
+	@Override
+	public Edge addEdge(final Vertex sourceVertex, final Vertex targetVertex) {
+		throw new UnsupportedOperationException("Edge type view");
+	}
+
+	@Override
+	public boolean addEdge(final Vertex sourceVertex, final Vertex targetVertex, final Edge e) {
+		throw new UnsupportedOperationException("Edge type view");
+	}
+
+	@Override
+	public Vertex addVertex() {
+		throw new UnsupportedOperationException("Edge type view");
+	}
+
+	@Override
+	public boolean addVertex(final Vertex v) {
+		throw new UnsupportedOperationException("Edge type view");
+	}
+
+	@Override
+	public boolean containsEdge(final Edge e) {
+		return e != null && accepts(e) && pdg.containsEdge(e);
+	}
+
+	@Override
+	public boolean containsVertex(final Vertex v) {
+		return pdg.containsVertex(v);
+	}
+
+	@Override
+	public Set<Edge> edgeSet() {
+		return new AbstractSet<Edge>() {
+			@Override
+			public Iterator<Edge> iterator() {
+				return concat(pdg::edgesOfType);
+			}
+
+			@Override
+			public boolean contains(final Object o) {
+				return o instanceof Edge && containsEdge((Edge) o);
+			}
+
+			@Override
+			public int size() {
+				int result = 0;
+				for (final EdgeType t : types)
+					result += pdg.edgesOfType(t).size();
+				return result;
+			}
+		};
+	}
+
+	@Override
+	public int degreeOf(final Vertex vertex) {
+		return inDegreeOf(vertex) + outDegreeOf(vertex);
+	}
+
+	@Override
+	public Set<Edge> edgesOf(final Vertex vertex) {
+		return new FilteredEdges(pdg.edgesOf(vertex));
+	}
+
+	@Override
+	public int inDegreeOf(final Vertex vertex) {
+		return incomingEdgesOf(vertex).size();
+	}
+
+	@Override
+	public Set<Edge> incomingEdgesOf(final Vertex vertex) {
+		assertVertexExist(vertex);
+		return new IncidentEdges(t -> pdg.incomingEdgesOf(vertex, t));
+	}
+
+	@Override
+	public int outDegreeOf(final Vertex vertex) {
+		return outgoingEdgesOf(vertex).size();
+	}
+
+	@Override
+	public Set<Edge> outgoingEdgesOf(final Vertex vertex) {
+		assertVertexExist(vertex);
+		return new IncidentEdges(t -> pdg.outgoingEdgesOf(vertex, t));
+	}
+
+	@Override
+	public Edge removeEdge(final Vertex sourceVertex, final Vertex targetVertex) {
+		throw new UnsupportedOperationException("Edge type view");
+	}
+
+	@Override
+	public boolean removeEdge(final Edge e) {
+		throw new UnsupportedOperationException("Edge type view");
+	}
+
+	@Override
+	public boolean removeVertex(final Vertex v) {
+		throw new UnsupportedOperationException("Edge type view");
+	}
+
+	@Override
+	public Set<Vertex> vertexSet() {
+		return Collections.unmodifiableSet(pdg.vertexSet());
+	}
+
+	@Override
+	public Vertex getEdgeSource(final Edge e) {
+		return pdg.getEdgeSource(e);
+	}
+
+	@Override
+	public Vertex getEdgeTarget(final Edge e) {
+		return pdg.getEdgeTarget(e);
+	}
+
+	@Override
+	public GraphType getType() {
+		return TYPE;
+	}
+
+	@Override
+	public double getEdgeWeight(final Edge e) {
+		return Graph.DEFAULT_EDGE_WEIGHT;
+	}
+
+	@Override
+	public void setEdgeWeight(final Edge e, final double weight) {
+		throw new UnsupportedOperationException("Edge type view");
+	}
+
+	// The edges of every type of the view, one type after the other.
+	private Iterator<Edge> concat(final Function<EdgeType, Set<Edge>> edgesOfType) {
+		final Iterator<EdgeType> typeIt = types.iterator();
+		return new Iterator<Edge>() {
+			private Iterator<Edge> it = Collections.emptyIterator();
+
+			@Override
+			public boolean hasNext() {
+				while (!it.hasNext() && typeIt.hasNext())
+					it = edgesOfType.apply(typeIt.next()).iterator();
+				return it.hasNext();
+			}
+
+			@Override
+			public Edge next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				return it.next();
+			}
+		};
+	}
+
+	// Incoming or outgoing edges of a vertex, given per type by the PDG.
+	private class IncidentEdges extends AbstractSet<Edge> {
+
+		private final Function<EdgeType, Set<Edge>> edgesOfType;
+
+		IncidentEdges(final Function<EdgeType, Set<Edge>> edgesOfType) {
+			this.edgesOfType = edgesOfType;
+		}
+
+		@Override
+		public Iterator<Edge> iterator() {
+			return concat(edgesOfType);
+		}
+
+		@Override
+		public boolean contains(final Object o) {
+			return o instanceof Edge && accepts((Edge) o) && edgesOfType.apply(((Edge) o).getType()).contains(o);
+		}
+
+		@Override
+		public int size() {
+			int result = 0;
+			for (final EdgeType t : types)
+				result += edgesOfType.apply(t).size();
+			return result;
+		}
+
+	}
+
+	// Edges of the underlying set that have one of the view's types.
+	private class FilteredEdges extends AbstractSet<Edge> {
+
+		private final Set<Edge> edges;
+
+		FilteredEdges(final Set<Edge> edges) {
+			this.edges = edges;
+		}
+
+		@Override
+		public Iterator<Edge> iterator() {
+			final Iterator<Edge> it = edges.iterator();
+			return new Iterator<Edge>() {
+				private Edge next = advance();
+
+				private Edge advance() {
+					while (it.hasNext()) {
+						final Edge e = it.next();
+						if (accepts(e))
+							return e;
+					}
+					return null;
+				}
+
+				@Override
+				public boolean hasNext() {
+					return next != null;
+				}
+
+				@Override
+				public Edge next() {
+					if (next == null)
+						throw new NoSuchElementException();
+					final Edge result = next;
+					next = advance();
+					return result;
+				}
+			};
+		}
+
+		@Override
+		public boolean contains(final Object o) {
+			return o instanceof Edge && accepts((Edge) o) && edges.contains(o);
+		}
+
+		@Override
+		public int size() {
+			int result = 0;
+			for (final Edge e : edges)
+				if (accepts(e))
+					result++;
+			return result;
+		}
+
+	}
+
+}
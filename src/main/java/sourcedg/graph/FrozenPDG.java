@@ -0,0 +1,425 @@
+package sourcedg.graph;
+
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Supplier;
+
+import org.jgrapht.Graph;
+import org.jgrapht.GraphType;
+import org.jgrapht.graph.AbstractGraph;
+import org.jgrapht.graph.DefaultGraphType;
+
+/*
+ * Immutable snapshot of a PDG, see PDG.freeze(). Vertices are kept in an array
+ * and edges in compressed sparse row form (forward and reverse) with a byte
+ * column for the edge type, so that traversals can run on ints.
+ *
+ * Edge objects are only created when the Graph API asks for them, all at once,
+ * and are then the same objects for the lifetime of the snapshot. They are not
+ * the edges of the PDG the snapshot was taken from.
+ */
+public class FrozenPDG extends AbstractGraph<Vertex, Edge> implements Serializable {
+
+	private static final long serialVersionUID = -3012592284766713440L;
+
+	private static final EdgeType[] EDGE_TYPES = EdgeType.values();
+	private static final byte NO_TYPE = -1;
+	private static final GraphType TYPE = new DefaultGraphType.Builder().directed().allowMultipleEdges(true)
+			.allowSelfLoops(true).weighted(false).modifiable(false).build();
+
+	private final Vertex[] vertices;
+	private final Map<Vertex, Integer> index;
+	// Forward adjacency, edges are numbered by their position here.
+	private final int[] outStart;
+	private final int[] outTarget;
+	private final byte[] outType;
+	// Reverse adjacency, pointing back to the edge numbers.
+	private final int[] inStart;
+	private final int[] inSource;
+	private final int[] inEdge;
+	private final String pathToProgram;
+	// Modification count of the PDG at the time of the snapshot.
+	private final int modCount;
+
+	private transient volatile Edge[] edges;
+
+	FrozenPDG(final Graph<Vertex, Edge> g, final String pathToProgram, final int modCount) {
+		this.pathToProgram = pathToProgram;
+		this.modCount = modCount;
+		final int n = g.vertexSet().size();
+		final int m = g.edgeSet().size();
+		vertices = g.vertexSet().toArray(new Vertex[n]);
+		index = new IdentityHashMap<>(n);
+		for (int i = 0; i < n; i++)
+			index.put(vertices[i], i);
+
+		outStart = new int[n + 1];
+		outTarget = new int[m];
+		outType = new byte[m];
+		inStart = new int[n + 1];
+		inSource = new int[m];
+		inEdge = new int[m];
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			outStart[i] = k;
+			for (final Edge e : g.outgoingEdgesOf(vertices[i])) {
+				final int t = index.get(g.getEdgeTarget(e));
+				outTarget[k] = t;
+				outType[k] = e.getType() == null ? NO_TYPE : (byte) e.getType().ordinal();
+				inStart[t + 1]++;
+				k++;
+			}
+		}
+		outStart[n] = k;
+		for (int i = 0; i < n; i++)
+			inStart[i + 1] += inStart[i];
+		final int[] inPos = Arrays.copyOf(inStart, n);
+		for (int i = 0; i < n; i++) {
+			for (int e = outStart[i]; e < outStart[i + 1]; e++) {
+				final int p = inPos[outTarget[e]]++;
+				inSource[p] = i;
+				inEdge[p] = e;
+			}
+		}
+	}
+
+	// Snapshot of any graph of vertices and edges.
+	public static FrozenPDG of(final Graph<Vertex, Edge> g) {
+		if (g instanceof FrozenPDG)
+			return (FrozenPDG) g;
+		if (g instanceof PDG)
+			return ((PDG) g).freeze();
+		return new FrozenPDG(g, null, 0);
+	}
+
+	// Dense index API
+
+	public int vertexCount() {
+		return vertices.length;
+	}
+
+	public int edgeCount() {
+		return outTarget.length;
+	}
+
+	public Vertex vertex(final int i) {
+		return vertices[i];
+	}
+
+	// Index of the given vertex, -1 if it is not in the snapshot.
+	public int indexOf(final Vertex v) {
+		final Integer i = index.get(v);
+		return i == null ? -1 : i;
+	}
+
+	// Outgoing edges of vertex i are numbered firstOut(i) to firstOut(i + 1) - 1.
+	public int firstOut(final int i) {
+		return outStart[i];
+	}
+
+	public int target(final int e) {
+		return outTarget[e];
+	}
+
+	public EdgeType type(final int e) {
+		return outType[e] == NO_TYPE ? null : EDGE_TYPES[outType[e]];
+	}
+
+	// Ordinal of the type of edge e, -1 for untyped edges.
+	public int typeOrdinal(final int e) {
+		return outType[e];
+	}
+
+	// Incoming edges of vertex i are at positions firstIn(i) to firstIn(i + 1) - 1.
+	public int firstIn(final int i) {
+		return inStart[i];
+	}
+
+	public int inSource(final int p) {
+		return inSource[p];
+	}
+
+	// Number of the edge at the given position of the reverse adjacency.
+	public int inEdge(final int p) {
+		return inEdge[p];
+	}
+
+	public String getPathToProgram() {
+		return pathToProgram;
+	}
+
+	int getModificationCount() {
+		return modCount;
+	}
+
+	// Graph API
+
+	private Edge[] edges() {
+		Edge[] result = edges;
+		if (result == null) {
+			synchronized (this) {
+				result = edges;
+				if (result == null) {
+					result = new Edge[outTarget.length];
+					for (int i = 0; i < vertices.length; i++)
+						for (int e = outStart[i]; e < outStart[i + 1]; e++)
+							result[e] = new Edge(vertices[i], vertices[outTarget[e]], type(e));
+					edges = result;
+				}
+			}
+		}
+		return result;
+	}
+
+	private int edgeIndexOf(final Edge e) {
+		final Edge[] all = edges;
+		if (all == null || e == null)
+			return -1;
+		final int s = indexOf(e.getSource());
+		if (s < 0)
+			return -1;
+		for (int k = outStart[s]; k < outStart[s + 1]; k++)
+			if (all[k] == e)
+				return k;
+		return -1;
+	}
+
+	private int vertexIndex(final Vertex v) {
+		final int i = indexOf(v);
+		if (i < 0)
+			throw new IllegalArgumentException("no such vertex in graph: " + v);
+		return i;
+	}
+
+	@Override
+	public Set<Edge> getAllEdges(final Vertex sourceVertex, final Vertex targetVertex) {
+		final int s = indexOf(sourceVertex);
+		final int t = indexOf(targetVertex);
+		if (s < 0 || t < 0)
+			return null;
+		final Edge[] all = edges();
+		final Set<Edge> result = new LinkedHashSet<>();
+		for (int k = outStart[s]; k < outStart[s + 1]; k++)
+			if (outTarget[k] == t)
+				result.add(all[k]);
+		return result;
+	}
+
+	@Override
+	public Edge getEdge(final Vertex sourceVertex, final Vertex targetVertex) {
+		final int s = indexOf(sourceVertex);
+		final int t = indexOf(targetVertex);
+		if (s < 0 || t < 0)
+			return null;
+		for (int k = outStart[s]; k < outStart[s + 1]; k++)
+			if (outTarget[k] == t)
+				return edges()[k];
+		return null;
+	}
+
+	@Override
+	public Supplier<Vertex> getVertexSupplier() {
+		return null;
+	}
+
+	@Override
+	public Supplier<Edge> getEdgeSupplier() {
+		return null;
+	}
+
+	@Override
+	public Edge addEdge(final Vertex sourceVertex, final Vertex targetVertex) {
+		throw new UnsupportedOperationException("Frozen PDG");
+	}
+
+	@Override
+	public boolean addEdge(final Vertex sourceVertex, final Vertex targetVertex, final Edge e) {
+		throw new UnsupportedOperationException("Frozen PDG");
+	}
+
+	@Override
+	public Vertex addVertex() {
+		throw new UnsupportedOperationException("Frozen PDG");
+	}
+
+	@Override
+	public boolean addVertex(final Vertex v) {
+		throw new UnsupportedOperationException("Frozen PDG");
+	}
+
+	@Override
+	public boolean containsEdge(final Edge e) {
+		return edgeIndexOf(e) >= 0;
+	}
+
+	@Override
+	public boolean containsVertex(final Vertex v) {
+		return index.containsKey(v);
+	}
+
+	@Override
+	public Set<Edge> edgeSet() {
+		return new EdgeRange(null, 0, outTarget.length);
+	}
+
+	@Override
+	public int degreeOf(final Vertex vertex) {
+		return inDegreeOf(vertex) + outDegreeOf(vertex);
+	}
+
+	@Override
+	public Set<Edge> edgesOf(final Vertex vertex) {
+		final Set<Edge> result = new LinkedHashSet<>(incomingEdgesOf(vertex));
+		result.addAll(outgoingEdgesOf(vertex));
+		return result;
+	}
+
+	@Override
+	public int inDegreeOf(final Vertex vertex) {
+		final int i = vertexIndex(vertex);
+		return inStart[i + 1] - inStart[i];
+	}
+
+	@Override
+	public Set<Edge> incomingEdgesOf(final Vertex vertex) {
+		final int i = vertexIndex(vertex);
+		return new EdgeRange(inEdge, inStart[i], inStart[i + 1]);
+	}
+
+	@Override
+	public int outDegreeOf(final Vertex vertex) {
+		final int i = vertexIndex(vertex);
+		return outStart[i + 1] - outStart[i];
+	}
+
+	@Override
+	public Set<Edge> outgoingEdgesOf(final Vertex vertex) {
+		final int i = vertexIndex(vertex);
+		return new EdgeRange(null, outStart[i], outStart[i + 1]);
+	}
+
+	@Override
+	public Edge removeEdge(final Vertex sourceVertex, final Vertex targetVertex) {
+		throw new UnsupportedOperationException("Frozen PDG");
+	}
+
+	@Override
+	public boolean removeEdge(final Edge e) {
+		throw new UnsupportedOperationException("Frozen PDG");
+	}
+
+	@Override
+	public boolean removeVertex(final Vertex v) {
+		throw new UnsupportedOperationException("Frozen PDG");
+	}
+
+	@Override
+	public Set<Vertex> vertexSet() {
+		return new AbstractSet<Vertex>() {
+			@Override
+			public Iterator<Vertex> iterator() {
+				return Arrays.asList(vertices).iterator();
+			}
+
+			@Override
+			public boolean contains(final Object o) {
+				return index.containsKey(o);
+			}
+
+			@Override
+			public int size() {
+				return vertices.length;
+			}
+		};
+	}
+
+	@Override
+	public Vertex getEdgeSource(final Edge e) {
+		return e.getSource();
+	}
+
+	@Override
+	public Vertex getEdgeTarget(final Edge e) {
+		return e.getTarget();
+	}
+
+	@Override
+	public GraphType getType() {
+		return TYPE;
+	}
+
+	@Override
+	public double getEdgeWeight(final Edge e) {
+		return Graph.DEFAULT_EDGE_WEIGHT;
+	}
+
+	@Override
+	public void setEdgeWeight(final Edge e, final double weight) {
+		throw new UnsupportedOperationException("Frozen PDG");
+	}
+
+	// Read-only set of the edges at positions from..to, either edge numbers
+	// directly or through the given indirection.
+	private class EdgeRange extends AbstractSet<Edge> {
+
+		private final int[] edgeIdx;
+		private final int from, to;
+
+		EdgeRange(final int[] edgeIdx, final int from, final int to) {
+			this.edgeIdx = edgeIdx;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		public Iterator<Edge> iterator() {
+			final Edge[] all = edges();
+			return new Iterator<Edge>() {
+				private int k = from;
+
+				@Override
+				public boolean hasNext() {
+					return k < to;
+				}
+
+				@Override
+				public Edge next() {
+					if (k >= to)
+						throw new NoSuchElementException();
+					final int e = edgeIdx == null ? k : edgeIdx[k];
+					k++;
+					return all[e];
+				}
+			};
+		}
+
+		@Override
+		public boolean contains(final Object o) {
+			if (!(o instanceof Edge))
+				return false;
+			final int e = edgeIndexOf((Edge) o);
+			if (e < 0)
+				return false;
+			if (edgeIdx == null)
+				return e >= from && e < to;
+			for (int k = from; k < to; k++)
+				if (edgeIdx[k] == e)
+					return true;
+			return false;
+		}
+
+		@Override
+		public int size() {
+			return to - from;
+		}
+
+	}
+
+}
@@ -1,10 +1,19 @@
 package sourcedg.graph;
 
+import java.lang.ref.SoftReference;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
@@ -12,11 +21,10 @@ import java.util.stream.Collectors;
 
 import com.github.javaparser.ast.expr.MethodCallExpr;
 
-import org.jgrapht.GraphPath;
 import org.jgrapht.Graphs;
-import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
 import org.jgrapht.graph.DefaultDirectedGraph;
 import org.jgrapht.graph.DirectedPseudograph;
+import org.jgrapht.util.ArrayUnenforcedSet;
 import sourcedg.analysis.PDGSlicer;
 
 public class PDG extends DirectedPseudograph<Vertex, Edge> {
@@ -26,6 +34,15 @@ public class PDG extends DirectedPseudograph<Vertex, Edge> {
 	 */
 	private static final long serialVersionUID = 4208713030783810103L;
 
+	public static final Set<EdgeType> CONTROL_EDGES = Collections
+			.unmodifiableSet(EnumSet.of(EdgeType.CTRL_TRUE, EdgeType.CTRL_FALSE));
+	public static final Set<EdgeType> DATA_EDGES = Collections.unmodifiableSet(EnumSet.of(EdgeType.DATA));
+	public static final Set<EdgeType> OUTPUT_EDGES = Collections.unmodifiableSet(EnumSet.of(EdgeType.OUTPUT));
+	public static final Set<EdgeType> CONTROL_DATA_EDGES = Collections
+			.unmodifiableSet(EnumSet.of(EdgeType.CTRL_TRUE, EdgeType.CTRL_FALSE, EdgeType.DATA));
+	public static final Set<EdgeType> DATA_OUTPUT_EDGES = Collections
+			.unmodifiableSet(EnumSet.of(EdgeType.DATA, EdgeType.OUTPUT));
+
 	private static Set<VertexType> dontCareTypes;
 
 	static {
@@ -44,9 +61,30 @@ public class PDG extends DirectedPseudograph<Vertex, Edge> {
 	}
 
 	private String pathToProgram;
+	// Edges partitioned by type, backs the edge type views.
+	private EnumMap<EdgeType, Set<Edge>> edgesByType;
+	// Incoming and outgoing edges of every vertex by type, back the incidence of
+	// the edge type views.
+	private Map<Vertex, EnumMap<EdgeType, Set<Edge>>> incomingByType;
+	private Map<Vertex, EnumMap<EdgeType, Set<Edge>>> outgoingByType;
+	// ID -> vertex, built on first lookup and kept current through addVertex,
+	// removeVertex and collapseNodes.
+	private transient Map<Long, Vertex> vertexById;
+	private transient boolean duplicateIds;
+	private transient Vertex entry;
+	// Bumped by every structural change, see getModificationCount().
+	private transient int modCount;
+	// Snapshot taken by freeze(), dropped by any structural change.
+	private transient volatile SoftReference<FrozenPDG> frozen;
+	private transient volatile SliceCache sliceCache;
+	// CFGs sharing the vertices, told when collapseNodes renumbers them.
+	private transient List<CFG> cfgs;
 
 	public PDG() {
 		super(Edge.class);
+		edgesByType = newEdgeIndex();
+		incomingByType = new HashMap<>();
+		outgoingByType = new HashMap<>();
 	}
 
 	// Merges "overlapping" DATA and OUTPUT edges.
@@ -57,60 +95,239 @@ public class PDG extends DirectedPseudograph<Vertex, Edge> {
 		return result;
 	}
 
-	public DefaultDirectedGraph<Vertex, Edge> getCDDG() {
+	// Copy restricted to the given edge types, keeping one edge between any two
+	// vertices like the graphs getCDG and the others used to return.
+	public DefaultDirectedGraph<Vertex, Edge> asDefaultDirectedGraph(final Set<EdgeType> types) {
 		DefaultDirectedGraph<Vertex, Edge> result = new DefaultDirectedGraph<>(Edge.class);
-		Set<Edge> E = edgeSet().stream().filter(e -> e.isControl() || EdgeType.DATA.equals(e.getType()))
-				.collect(Collectors.toSet());
 		Graphs.addAllVertices(result, vertexSet());
-		Graphs.addAllEdges(result, this, E);
+		for (final EdgeType t : types)
+			Graphs.addAllEdges(result, this, edgesByType.get(t));
 		return result;
 	}
 
-	public DefaultDirectedGraph<Vertex, Edge> getCDG() {
-		DefaultDirectedGraph<Vertex, Edge> result = new DefaultDirectedGraph<>(Edge.class);
-		Set<Edge> E = edgeSet().stream().filter(e -> e.isControl()).collect(Collectors.toSet());
-		Graphs.addAllVertices(result, vertexSet());
-		Graphs.addAllEdges(result, this, E);
-		return result;
+	// Live view restricted to the given edge types, nothing is copied.
+	public EdgeTypeView view(final Set<EdgeType> types) {
+		final EnumSet<EdgeType> mask = EnumSet.noneOf(EdgeType.class);
+		mask.addAll(types);
+		return new EdgeTypeView(this, mask);
 	}
 
-	public DefaultDirectedGraph<Vertex, Edge> getDDG() {
-		DefaultDirectedGraph<Vertex, Edge> result = new DefaultDirectedGraph<>(Edge.class);
-		Set<Edge> E = edgeSet().stream().filter(e -> EdgeType.DATA.equals(e.getType())).collect(Collectors.toSet());
-		Graphs.addAllVertices(result, vertexSet());
-		Graphs.addAllEdges(result, this, E);
-		return result;
+	// The views below keep parallel edges between the same two vertices, see
+	// asDefaultDirectedGraph(Set) for a simple graph with one edge per pair.
+	public EdgeTypeView getCDDG() {
+		return view(CONTROL_DATA_EDGES);
 	}
 
-	public DefaultDirectedGraph<Vertex, Edge> getODG() {
-		DefaultDirectedGraph<Vertex, Edge> result = new DefaultDirectedGraph<>(Edge.class);
-		Set<Edge> E = edgeSet().stream().filter(e -> EdgeType.OUTPUT.equals(e.getType())).collect(Collectors.toSet());
-		Graphs.addAllVertices(result, vertexSet());
-		Graphs.addAllEdges(result, this, E);
+	public EdgeTypeView getCDG() {
+		return view(CONTROL_EDGES);
+	}
+
+	public EdgeTypeView getDDG() {
+		return view(DATA_EDGES);
+	}
+
+	public EdgeTypeView getODG() {
+		return view(OUTPUT_EDGES);
+	}
+
+	public EdgeTypeView getDDGWithOutputEdges() {
+		return view(DATA_OUTPUT_EDGES);
+	}
+
+	// Edges of the given type, kept up to date as edges are added and removed.
+	public Set<Edge> edgesOfType(final EdgeType type) {
+		return Collections.unmodifiableSet(edgesByType.get(type));
+	}
+
+	// Incoming edges of v of the given type, kept up to date like edgesOfType.
+	public Set<Edge> incomingEdgesOf(final Vertex v, final EdgeType type) {
+		return incident(incomingByType, v, type);
+	}
+
+	// Outgoing edges of v of the given type, kept up to date like edgesOfType.
+	public Set<Edge> outgoingEdgesOf(final Vertex v, final EdgeType type) {
+		return incident(outgoingByType, v, type);
+	}
+
+	private static Set<Edge> incident(final Map<Vertex, EnumMap<EdgeType, Set<Edge>>> index, final Vertex v,
+			final EdgeType type) {
+		final EnumMap<EdgeType, Set<Edge>> byType = index.get(v);
+		final Set<Edge> edges = byType == null ? null : byType.get(type);
+		return edges == null ? Collections.emptySet() : Collections.unmodifiableSet(edges);
+	}
+
+	@Override
+	public Edge addEdge(final Vertex sourceVertex, final Vertex targetVertex) {
+		final Edge e = super.addEdge(sourceVertex, targetVertex);
+		if (e != null) {
+			indexEdge(e);
+			changed();
+		}
+		return e;
+	}
+
+	@Override
+	public boolean addEdge(final Vertex sourceVertex, final Vertex targetVertex, final Edge e) {
+		final boolean added = super.addEdge(sourceVertex, targetVertex, e);
+		if (added) {
+			indexEdge(e);
+			changed();
+		}
+		return added;
+	}
+
+	@Override
+	public Edge removeEdge(final Vertex sourceVertex, final Vertex targetVertex) {
+		final Edge e = super.removeEdge(sourceVertex, targetVertex);
+		if (e != null) {
+			unindexEdge(sourceVertex, targetVertex, e);
+			changed();
+		}
+		return e;
+	}
+
+	@Override
+	public boolean removeEdge(final Edge e) {
+		if (!containsEdge(e))
+			return false;
+		// The endpoints are gone once the edge is removed.
+		final Vertex source = getEdgeSource(e);
+		final Vertex target = getEdgeTarget(e);
+		super.removeEdge(e);
+		unindexEdge(source, target, e);
+		changed();
+		return true;
+	}
+
+	@Override
+	public boolean addVertex(final Vertex v) {
+		final boolean added = super.addVertex(v);
+		if (added) {
+			if (vertexById != null && vertexById.putIfAbsent(v.getId(), v) != null)
+				duplicateIds = true;
+			changed();
+		}
+		return added;
+	}
+
+	@Override
+	public boolean removeVertex(final Vertex v) {
+		final boolean removed = super.removeVertex(v);
+		if (removed) {
+			if (vertexById != null && vertexById.remove(v.getId(), v) && duplicateIds)
+				vertexById = null;
+			incomingByType.remove(v);
+			outgoingByType.remove(v);
+			changed();
+		}
+		if (v == entry)
+			entry = null;
+		return removed;
+	}
+
+	@Override
+	public Object clone() {
+		final PDG result = (PDG) super.clone();
+		result.vertexById = null;
+		result.entry = null;
+		result.frozen = null;
+		result.sliceCache = null;
+		// The clone shares the vertices, and so the CFGs.
+		if (cfgs != null)
+			result.cfgs = new ArrayList<>(cfgs);
+		result.edgesByType = newEdgeIndex();
+		result.incomingByType = new HashMap<>();
+		result.outgoingByType = new HashMap<>();
+		for (final Edge e : result.edgeSet())
+			result.indexEdge(e);
 		return result;
 	}
 
-	public DefaultDirectedGraph<Vertex, Edge> getDDGWithOutputEdges() {
-		DefaultDirectedGraph<Vertex, Edge> result = new DefaultDirectedGraph<>(Edge.class);
-		Set<Edge> E = edgeSet().stream()
-				.filter(e -> EdgeType.DATA.equals(e.getType()) || EdgeType.OUTPUT.equals(e.getType()))
-				.collect(Collectors.toSet());
-		Graphs.addAllVertices(result, vertexSet());
-		Graphs.addAllEdges(result, this, E);
+	private static EnumMap<EdgeType, Set<Edge>> newEdgeIndex() {
+		final EnumMap<EdgeType, Set<Edge>> result = new EnumMap<>(EdgeType.class);
+		for (final EdgeType t : EdgeType.values())
+			result.put(t, new LinkedHashSet<>());
 		return result;
 	}
 
+	private void indexEdge(final Edge e) {
+		final EdgeType t = e.getType();
+		if (t == null)
+			return;
+		edgesByType.get(t).add(e);
+		index(incomingByType, getEdgeTarget(e), t, e);
+		index(outgoingByType, getEdgeSource(e), t, e);
+	}
+
+	private static void index(final Map<Vertex, EnumMap<EdgeType, Set<Edge>>> index, final Vertex v,
+			final EdgeType t, final Edge e) {
+		final Set<Edge> edges = index.computeIfAbsent(v, k -> new EnumMap<>(EdgeType.class)).computeIfAbsent(t,
+				k -> new ArrayUnenforcedSet<>(1));
+		// super.clone() adds every edge again while the clone still shares the index
+		// of this PDG.
+		if (!edges.contains(e))
+			edges.add(e);
+	}
+
+	private void unindexEdge(final Vertex source, final Vertex target, final Edge e) {
+		final EdgeType t = e.getType();
+		if (t == null)
+			return;
+		edgesByType.get(t).remove(e);
+		unindex(incomingByType.get(target), t, e);
+		unindex(outgoingByType.get(source), t, e);
+	}
+
+	private static void unindex(final EnumMap<EdgeType, Set<Edge>> byType, final EdgeType t, final Edge e) {
+		if (byType == null)
+			return;
+		final Set<Edge> edges = byType.get(t);
+		if (edges != null && edges.remove(e) && edges.isEmpty())
+			byType.remove(t);
+	}
+
 	public int nestingLevel(Vertex entry, Vertex sink, boolean includeTry) {
-		DijkstraShortestPath<Vertex, Edge> sp = new DijkstraShortestPath<>(getCDG());
-		GraphPath<Vertex, Edge> path = sp.getPath(entry, sink);
-		List<Vertex> vtxLst = path.getVertexList();
-		long result = vtxLst.stream().filter(v -> v.getType().equals(VertexType.CTRL)).count();
-		if (!includeTry) {
-			int tryNodes = (int) path.getVertexList().stream().filter(v -> VertexType.TRY.equals(v.getType())).count();
-			result -= tryNodes;
-			result = Math.max(0, result);
+		Integer result = nestingLevels(entry, includeTry).get(sink);
+		if (result == null)
+			throw new IllegalArgumentException("No control dependence path from " + entry + " to " + sink);
+		return result;
+	}
+
+	// Nesting level of every vertex reachable from the entry through control
+	// dependences: the CTRL vertices on a shortest path, endpoints included, minus
+	// the TRY vertices unless includeTry. One breadth-first pass for all vertices.
+	public Map<Vertex, Integer> nestingLevels(Vertex entry, boolean includeTry) {
+		Map<Vertex, int[]> counts = new HashMap<>();
+		Deque<Vertex> queue = new ArrayDeque<>();
+		counts.put(entry, new int[] { ctrlCount(entry), tryCount(entry) });
+		queue.add(entry);
+		while (!queue.isEmpty()) {
+			Vertex v = queue.poll();
+			int[] c = counts.get(v);
+			for (Edge e : outgoingEdgesOf(v)) {
+				if (!e.isControl())
+					continue;
+				Vertex w = e.getTarget();
+				if (counts.containsKey(w))
+					continue;
+				counts.put(w, new int[] { c[0] + ctrlCount(w), c[1] + tryCount(w) });
+				queue.add(w);
+			}
+		}
+		Map<Vertex, Integer> result = new HashMap<>(counts.size() * 2);
+		for (Entry<Vertex, int[]> e : counts.entrySet()) {
+			int[] c = e.getValue();
+			result.put(e.getKey(), includeTry ? c[0] : Math.max(0, c[0] - c[1]));
 		}
-		return (int) result;
+		return result;
+	}
+
+	private static int ctrlCount(Vertex v) {
+		return VertexType.CTRL.equals(v.getType()) ? 1 : 0;
+	}
+
+	private static int tryCount(Vertex v) {
+		return VertexType.TRY.equals(v.getType()) ? 1 : 0;
 	}
 
 	public Set<Vertex> removeUnusedDefinitions() {
@@ -162,7 +379,7 @@ public class PDG extends DirectedPseudograph<Vertex, Edge> {
 					Edge newEdge = new Edge(parent, e.getTarget(), e.getType());
 					this.addEdge(parent, e.getTarget(), newEdge);
 				}
-				parent.getSubtypes().addAll(v.getSubtypes());
+				parent.addSubtypes(v.getSubtypes());
 
 			}
 		}
@@ -176,6 +393,18 @@ public class PDG extends DirectedPseudograph<Vertex, Edge> {
 		for (Vertex v : sortedNodes) {
 			v.setId(id++);
 		}
+		vertexById = null;
+		if (cfgs != null)
+			for (final CFG cfg : cfgs)
+				cfg.renumbered();
+	}
+
+	// Registers a CFG built over vertices of this PDG, so that its ID index
+	// follows collapseNodes.
+	public void addCfg(final CFG cfg) {
+		if (cfgs == null)
+			cfgs = new ArrayList<>();
+		cfgs.add(cfg);
 	}
 
 	public Vertex actualOut(final Vertex v) {
@@ -190,11 +419,28 @@ public class PDG extends DirectedPseudograph<Vertex, Edge> {
 		return null;
 	}
 
-	public Vertex getVertexWithId(final int id) {
-		final Optional<Vertex> v = vertexSet().stream().filter(u -> u.getId() == id).findFirst();
-		if (v.isPresent())
-			return v.get();
-		return null;
+	private void reindex() {
+		vertexById = indexById(vertexSet());
+		duplicateIds = vertexById.size() < vertexSet().size();
+	}
+
+	public Vertex getVertexWithId(final long id) {
+		if (vertexById == null)
+			reindex();
+		final Vertex v = vertexById.get(id);
+		if (v != null && v.getId() == id)
+			return v;
+		// Missing or mismatched, some ID may have been changed from outside: start over.
+		reindex();
+		return vertexById.get(id);
+	}
+
+	// First vertex of each ID, in vertex set order.
+	static Map<Long, Vertex> indexById(final Set<Vertex> vertices) {
+		final Map<Long, Vertex> result = new HashMap<>(vertices.size() * 2);
+		for (final Vertex v : vertices)
+			result.putIfAbsent(v.getId(), v);
+		return result;
 	}
 
 	public static boolean isNodeOfInterest(Vertex v) {
@@ -218,15 +464,68 @@ public class PDG extends DirectedPseudograph<Vertex, Edge> {
 	}
 
 	public Vertex getEntry() {
-		return vertexSet().stream().filter(n -> VertexType.ENTRY.equals(n.getType())).findFirst().get();
+		if (entry == null || !VertexType.ENTRY.equals(entry.getType()))
+			entry = vertexSet().stream().filter(n -> VertexType.ENTRY.equals(n.getType())).findFirst().get();
+		return entry;
 	}
 
 	public Set<Vertex> backwardSlice(final Set<Vertex> S) {
-		return PDGSlicer.backward(this, S);
+		final SliceCache cache = sliceCache;
+		if (cache == null)
+			return PDGSlicer.backward(this, S);
+		return cache.get(S, true, modCount, c -> PDGSlicer.backward(this, c));
 	}
 
 	public Set<Vertex> forwardSlice(final Set<Vertex> S) {
-		return PDGSlicer.forward(this, S);
+		final SliceCache cache = sliceCache;
+		if (cache == null)
+			return PDGSlicer.forward(this, S);
+		return cache.get(S, false, modCount, c -> PDGSlicer.forward(this, c));
+	}
+
+	// Keeps up to the given number of slices, least recently used first out.
+	// The cache is emptied by any structural change of the PDG. While enabled,
+	// backwardSlice and forwardSlice return unmodifiable sets.
+	public SliceCache enableSliceCache(final int capacity) {
+		final SliceCache result = new SliceCache(capacity, modCount);
+		sliceCache = result;
+		return result;
+	}
+
+	public void disableSliceCache() {
+		sliceCache = null;
+	}
+
+	// Null unless enabled.
+	public SliceCache getSliceCache() {
+		return sliceCache;
+	}
+
+	// Immutable compact snapshot of the current state of this PDG.
+	// The snapshot is shared until the PDG is modified, as long as memory allows.
+	public FrozenPDG freeze() {
+		final SoftReference<FrozenPDG> ref = frozen;
+		FrozenPDG result = ref == null ? null : ref.get();
+		if (result == null || result.getModificationCount() != modCount) {
+			result = new FrozenPDG(this, pathToProgram, modCount);
+			frozen = new SoftReference<>(result);
+		}
+		return result;
+	}
+
+	// Drops the snapshot shared by freeze(), the next call takes a new one.
+	public void releaseSnapshot() {
+		frozen = null;
+	}
+
+	private void changed() {
+		modCount++;
+		frozen = null;
+	}
+
+	// Number of structural changes (vertices or edges added or removed) so far.
+	public int getModificationCount() {
+		return modCount;
 	}
 
 	public String getPathToProgram() {
@@ -235,6 +534,7 @@ public class PDG extends DirectedPseudograph<Vertex, Edge> {
 
 	public void setPathToProgram(String pathToProgram) {
 		this.pathToProgram = pathToProgram;
+		frozen = null;
 	}
 
 }
@@ -0,0 +1,144 @@
+package sourcedg.graph;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+
+/*
+ * Bounded LRU cache of the slices of a PDG, see PDG.enableSliceCache(int).
+ * Entries are keyed by criterion and direction and are valid for one
+ * modification count of the PDG: the first lookup after a structural change
+ * empties the cache. Cached slices are unmodifiable. Slices are computed outside
+ * the lock, so lookups do not wait for each other; threads missing the same
+ * entry at once may each compute it, but only one copy is cached.
+ */
+public class SliceCache {
+
+	private final int capacity;
+	private final LinkedHashMap<Key, Set<Vertex>> slices;
+	private int modCount;
+	private long hits, misses, evictions, invalidations;
+
+	SliceCache(final int capacity, final int modCount) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		this.capacity = capacity;
+		this.modCount = modCount;
+		slices = new LinkedHashMap<Key, Set<Vertex>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(final Map.Entry<Key, Set<Vertex>> eldest) {
+				if (size() <= SliceCache.this.capacity)
+					return false;
+				evictions++;
+				return true;
+			}
+		};
+	}
+
+	Set<Vertex> get(final Set<Vertex> S, final boolean backward, final int modCount,
+			final Function<Set<Vertex>, Set<Vertex>> slicer) {
+		final Key key = new Key(S, backward);
+		synchronized (this) {
+			if (modCount != this.modCount) {
+				if (!slices.isEmpty())
+					invalidations++;
+				slices.clear();
+				this.modCount = modCount;
+			}
+			final Set<Vertex> result = slices.get(key);
+			if (result != null) {
+				hits++;
+				return result;
+			}
+			misses++;
+		}
+		final Set<Vertex> result = Collections.unmodifiableSet(slicer.apply(key.criterion));
+		synchronized (this) {
+			// Dropped if the cache moved on to another modification count meanwhile.
+			if (modCount != this.modCount)
+				return result;
+			final Set<Vertex> published = slices.putIfAbsent(key, result);
+			return published != null ? published : result;
+		}
+	}
+
+	public int getCapacity() {
+		return capacity;
+	}
+
+	public synchronized int size() {
+		return slices.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	// Times the cache was emptied because the PDG changed.
+	public synchronized long getInvalidations() {
+		return invalidations;
+	}
+
+	public synchronized double getHitRate() {
+		final long lookups = hits + misses;
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+
+	public synchronized void clear() {
+		slices.clear();
+	}
+
+	public synchronized void resetStatistics() {
+		hits = misses = evictions = invalidations = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return String.format("[size=%d/%d, hits=%d, misses=%d, evictions=%d, invalidations=%d]", slices.size(),
+				capacity, hits, misses, evictions, invalidations);
+	}
+
+	// Criterion copied on creation, so that later changes to the caller's set
+	// do not affect the entry.
+	private static class Key {
+
+		final Set<Vertex> criterion;
+		final boolean backward;
+		final int hash;
+
+		Key(final Set<Vertex> criterion, final boolean backward) {
+			this.criterion = Collections.unmodifiableSet(new HashSet<>(criterion));
+			this.backward = backward;
+			hash = Objects.hash(this.criterion, backward);
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key))
+				return false;
+			final Key k = (Key) o;
+			return backward == k.backward && hash == k.hash && criterion.equals(k.criterion);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+	}
+
+}
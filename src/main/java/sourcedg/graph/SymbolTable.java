@@ -0,0 +1,115 @@
+package sourcedg.graph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+ * Identifiers of a build interned as dense int IDs starting from 1, where 0
+ * stands for no symbol. Sets of symbols are kept as sorted int arrays.
+ */
+public class SymbolTable {
+
+	public static final int NONE = 0;
+	public static final int[] EMPTY = new int[0];
+
+	private final Map<String, Integer> ids;
+	private final List<String> names;
+
+	public SymbolTable() {
+		ids = new HashMap<>();
+		names = new ArrayList<>();
+		names.add(null);
+	}
+
+	public int intern(final String name) {
+		if (name == null)
+			return NONE;
+		Integer id = ids.get(name);
+		if (id == null) {
+			id = names.size();
+			ids.put(name, id);
+			names.add(name);
+		}
+		return id;
+	}
+
+	public int[] internAll(final Collection<String> names) {
+		if (names.isEmpty())
+			return EMPTY;
+		final int[] result = new int[names.size()];
+		int i = 0;
+		for (final String name : names)
+			result[i++] = intern(name);
+		Arrays.sort(result);
+		return distinct(result);
+	}
+
+	// ID of the given identifier, NONE if it was never interned.
+	public int id(final String name) {
+		final Integer id = ids.get(name);
+		return id == null ? NONE : id;
+	}
+
+	public String name(final int id) {
+		return names.get(id);
+	}
+
+	// Upper bound of the IDs given so far.
+	public int size() {
+		return names.size();
+	}
+
+	public static boolean contains(final int[] set, final int id) {
+		return Arrays.binarySearch(set, id) >= 0;
+	}
+
+	public static int[] union(final int[] a, final int[] b) {
+		if (b.length == 0)
+			return a;
+		if (a.length == 0)
+			return b;
+		final int[] result = new int[a.length + b.length];
+		int i = 0, j = 0, k = 0;
+		while (i < a.length && j < b.length) {
+			if (a[i] < b[j])
+				result[k++] = a[i++];
+			else if (a[i] > b[j])
+				result[k++] = b[j++];
+			else {
+				result[k++] = a[i++];
+				j++;
+			}
+		}
+		while (i < a.length)
+			result[k++] = a[i++];
+		while (j < b.length)
+			result[k++] = b[j++];
+		return k == result.length ? result : Arrays.copyOf(result, k);
+	}
+
+	public static int[] minus(final int[] a, final int[] b) {
+		if (a.length == 0 || b.length == 0)
+			return a;
+		final int[] result = new int[a.length];
+		int k = 0;
+		for (final int id : a)
+			if (!contains(b, id))
+				result[k++] = id;
+		if (k == a.length)
+			return a;
+		return k == 0 ? EMPTY : Arrays.copyOf(result, k);
+	}
+
+	private static int[] distinct(final int[] sorted) {
+		int k = 0;
+		for (int i = 0; i < sorted.length; i++)
+			if (k == 0 || sorted[k - 1] != sorted[i])
+				sorted[k++] = sorted[i];
+		return k == sorted.length ? sorted : Arrays.copyOf(sorted, k);
+	}
+
+}
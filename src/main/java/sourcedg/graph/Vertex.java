@@ -1,6 +1,8 @@
 package sourcedg.graph;
 
 import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -19,12 +21,11 @@ public class Vertex implements Serializable {
 	private Integer endLine;
 	private Integer line;
 	private transient PDG pdg;
-	private transient String def;
-	private transient Set<String> uses;
+	// Symbols of the build's SymbolTable. Uses are sorted and never modified in place.
+	private transient int def;
+	private transient int[] uses;
 	// Used for output dependence edges.
-	private transient String pseudoUse;
-	private final transient Set<Vertex> in;
-	private transient Set<Vertex> out;
+	private transient int pseudoUse;
 	private transient Node ast;
 
 	// Graphviz attributes
@@ -34,28 +35,19 @@ public class Vertex implements Serializable {
 
 	public Vertex(final String label) {
 		this.label = label.replaceAll("\n", " ");
-		uses = new HashSet<>();
-		subtypes = new HashSet<>();
-		in = new HashSet<>();
-		out = new HashSet<>();
+		uses = SymbolTable.EMPTY;
 	}
 
 	public Vertex(final long id) {
 		this.id = id;
-		uses = new HashSet<>();
-		subtypes = new HashSet<>();
-		in = new HashSet<>();
-		out = new HashSet<>();
+		uses = SymbolTable.EMPTY;
 	}
 
 	public Vertex(final VertexType type, final String label, final Node ast) {
 		id = -1;
 		this.type = type;
 		this.label = label.replaceAll("\n", " ");
-		uses = new HashSet<>();
-		subtypes = new HashSet<>();
-		in = new HashSet<>();
-		out = new HashSet<>();
+		uses = SymbolTable.EMPTY;
 		this.ast = ast;
 	}
 
@@ -67,10 +59,7 @@ public class Vertex implements Serializable {
 		this.id = id;
 		this.type = type;
 		this.label = label.replaceAll("\n", " ");
-		uses = new HashSet<>();
-		subtypes = new HashSet<>();
-		in = new HashSet<>();
-		out = new HashSet<>();
+		uses = SymbolTable.EMPTY;
 	}
 
 	public long getId() {
@@ -89,32 +78,40 @@ public class Vertex implements Serializable {
 		this.label = label.replaceAll("\n", " ");
 	}
 
-	public String getDef() {
+	public int getDef() {
 		return def;
 	}
 
-	public void setDef(final String def) {
+	public void setDef(final int def) {
 		this.def = def;
 	}
 
-	public Set<String> getUses() {
+	public int[] getUses() {
 		if (uses == null)
-			uses = new HashSet<>();
+			uses = SymbolTable.EMPTY;
 		return uses;
 	}
 
-	public String getPseudoUse() {
+	public int getPseudoUse() {
 		return pseudoUse;
 	}
 
-	public void setPseudoUse(String pseudoUse) {
+	public void setPseudoUse(final int pseudoUse) {
 		this.pseudoUse = pseudoUse;
 	}
 
-	public void setUses(final Set<String> uses) {
+	public void setUses(final int[] uses) {
 		this.uses = uses;
 	}
 
+	public void addUses(final int[] uses) {
+		this.uses = SymbolTable.union(getUses(), uses);
+	}
+
+	public void removeUses(final int[] uses) {
+		this.uses = SymbolTable.minus(getUses(), uses);
+	}
+
 	public Integer getStartLine() {
 		return startLine;
 	}
@@ -131,18 +128,6 @@ public class Vertex implements Serializable {
 		this.endLine = endLine;
 	}
 
-	public Set<Vertex> getIn() {
-		return in;
-	}
-
-	public Set<Vertex> getOut() {
-		return out;
-	}
-
-	public void setOut(final Set<Vertex> out) {
-		this.out = out;
-	}
-
 	public VertexType getType() {
 		return type;
 	}
@@ -151,16 +136,34 @@ public class Vertex implements Serializable {
 		this.type = type;
 	}
 
+	// Read-only, use setSubtypes, addSubtype or addSubtypes to change them.
 	public Set<String> getSubtypes() {
-		return subtypes;
+		if (subtypes == null)
+			return Collections.emptySet();
+		return Collections.unmodifiableSet(subtypes);
 	}
 
+	// Copies the given subtypes.
 	public void setSubtypes(final Set<String> subtypes) {
-		this.subtypes = subtypes;
+		this.subtypes = subtypes == null || subtypes.isEmpty() ? null : new HashSet<>(subtypes);
+	}
+
+	public void addSubtype(final String subtype) {
+		if (subtypes == null)
+			subtypes = new HashSet<>();
+		subtypes.add(subtype);
+	}
+
+	public void addSubtypes(final Collection<String> subtypes) {
+		if (subtypes.isEmpty())
+			return;
+		if (this.subtypes == null)
+			this.subtypes = new HashSet<>();
+		this.subtypes.addAll(subtypes);
 	}
 
 	public Set<String> getTypeAndSubtypes() {
-		Set<String> result = new HashSet<>(subtypes);
+		Set<String> result = new HashSet<>(getSubtypes());
 		result.add(type.name());
 		return result;
 	}
@@ -178,12 +181,12 @@ public class Vertex implements Serializable {
 	}
 
 	public void clearDefUses() {
-		def = null;
-		uses = new HashSet<>();
+		def = SymbolTable.NONE;
+		uses = SymbolTable.EMPTY;
 	}
 
 	public void clearUses() {
-		uses = new HashSet<>();
+		uses = SymbolTable.EMPTY;
 	}
 
 	public Integer getLine() {
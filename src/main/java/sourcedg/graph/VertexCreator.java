@@ -56,9 +56,11 @@ public class VertexCreator {
 
 	private long id;
 	private PDGBuilderConfig cfg;
+	private final SymbolTable symbols;
 
 	public VertexCreator(PDGBuilderConfig cfg) {
 		this.cfg = cfg;
+		symbols = new SymbolTable();
 	}
 
 	public Vertex exit() {
@@ -113,7 +115,7 @@ public class VertexCreator {
 		setDef(n, result);
 		// Uses are set for array accesses in assignments.
 		setUses(n, result);
-		result.getUses().remove(result.getDef());
+		result.removeUses(new int[] { result.getDef() });
 		return result;
 	}
 
@@ -362,20 +364,24 @@ public class VertexCreator {
 		String def = Utils.first(names(n));
 		if (n instanceof ArrayAccessExpr)
 			def = ((ArrayAccessExpr) n).getName().toString();
-		v.setDef(def);
+		v.setDef(symbols.intern(def));
 	}
 
 	private void setUses(final Node n, final Vertex v) {
-		final Set<String> uses = names(n);
-		v.setUses(uses);
+		v.setUses(uses(n));
 	}
 
 	private void setPseudoUse(final Node n, final Vertex v) {
 		String pseudoUse = Utils.first(names(n));
-		v.setPseudoUse(pseudoUse);
+		v.setPseudoUse(symbols.intern(pseudoUse));
 		// v.getUses().add(pseudoUse);
 	}
 
+	// Names in the given node as symbols of this build.
+	public int[] uses(final Node n) {
+		return symbols.internAll(names(n));
+	}
+
 	// TODO: This is a preliminary construction for def and uses. Be more thorough.
 	public static Set<String> names(final Node ast) {
 		if (ast == null)
@@ -389,13 +395,17 @@ public class VertexCreator {
 	}
 
 	public static void selfCall(final Vertex v) {
-		v.getSubtypes().add("SELF_CALL");
+		v.addSubtype("SELF_CALL");
 	}
 
 	public long getId() {
 		return id;
 	}
 
+	public SymbolTable getSymbols() {
+		return symbols;
+	}
+
 	public void setId(long id) {
 		this.id = id;
 	}
@@ -405,59 +415,59 @@ public class VertexCreator {
 		@Override
 		public void visit(ArrayAccessExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add("ARRAY_ACCESS");
+			v.addSubtype("ARRAY_ACCESS");
 		}
 
 		@Override
 		public void visit(BinaryExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add(n.getOperator().toString());
+			v.addSubtype(n.getOperator().toString());
 		}
 
 //		@Override
 //		public void visit(FieldAccessExpr n, Vertex v) {
 //			super.visit(n, v);
-//			v.getSubtypes().add(n.getName().toString());
+//			v.addSubtype(n.getName().toString());
 //		}
 
 		@Override
 		public void visit(InstanceOfExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add("INSTANCE_OF");
+			v.addSubtype("INSTANCE_OF");
 		}
 
 		@Override
 		public void visit(ObjectCreationExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add(n.getTypeAsString());
-			v.getSubtypes().add("NEW_OBJECT");
+			v.addSubtype(n.getTypeAsString());
+			v.addSubtype("NEW_OBJECT");
 		}
 
 		@Override
 		public void visit(ArrayCreationExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add("NEW_ARRAY");
+			v.addSubtype("NEW_ARRAY");
 		}
 
 		@Override
 		public void visit(MethodCallExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add(n.getName().toString());
-			v.getSubtypes().add("METHOD_CALL");
+			v.addSubtype(n.getName().toString());
+			v.addSubtype("METHOD_CALL");
 			if (n.getScope().isPresent())
-				v.getSubtypes().add("SCOPED_CALL");
+				v.addSubtype("SCOPED_CALL");
 		}
 
 		@Override
 		public void visit(SuperExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add("SUPER");
+			v.addSubtype("SUPER");
 		}
 
 		@Override
 		public void visit(ThisExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add("THIS");
+			v.addSubtype("THIS");
 		}
 
 		@Override
@@ -465,44 +475,44 @@ public class VertexCreator {
 			super.visit(n, v);
 			String operator = n.getOperator().toString();
 			if (operator.contains("PREFIX") || operator.contains("POSTFIX"))
-				v.getSubtypes().add("PRE/POST");
-			v.getSubtypes().add(n.getOperator().toString());
+				v.addSubtype("PRE/POST");
+			v.addSubtype(n.getOperator().toString());
 		}
 
 		@Override
 		public void visit(BooleanLiteralExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add("" + n.getValue());
+			v.addSubtype("" + n.getValue());
 		}
 
 		@Override
 		public void visit(CharLiteralExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add(n.getValue().toUpperCase());
+			v.addSubtype(n.getValue().toUpperCase());
 		}
 
 		@Override
 		public void visit(IntegerLiteralExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add(n.getValue());
+			v.addSubtype(n.getValue());
 		}
 
 		@Override
 		public void visit(LongLiteralExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add(n.getValue());
+			v.addSubtype(n.getValue());
 		}
 
 		@Override
 		public void visit(NullLiteralExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add("null");
+			v.addSubtype("null");
 		}
 
 		@Override
 		public void visit(StringLiteralExpr n, Vertex v) {
 			super.visit(n, v);
-			v.getSubtypes().add(n.getValue().toUpperCase());
+			v.addSubtype(n.getValue().toUpperCase());
 		}
 
 		// Expressions/statements that we may receive as a whole.
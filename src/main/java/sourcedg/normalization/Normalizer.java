@@ -9,6 +9,7 @@ import java.util.Optional;
 import java.util.Set;
 
 import com.github.javaparser.JavaParser;
+import com.github.javaparser.Position;
 import com.github.javaparser.ast.CompilationUnit;
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
@@ -86,18 +87,20 @@ public class Normalizer {
     // visitors.add(new DoStmtVisitor());
     visitors.add(new EnclosedExprVisitor());
 
-    String newCu = null;
     for (final ModifierVisitor<Void> mv : visitors) {
       cu.accept(mv, null);
-      newCu = cu.toString();
-      // System.out.println(mv.getClass().getSimpleName());
-      // System.out.println();
-      // System.out.println(newCu);
-      cu = javaParser.parse(newCu).getResult().get();
+      freezeAssignments();
     }
     return cu;
   }
 
+  // Loop conditions depend on the statements recorded by a pass as they are once it is over,
+  // while later passes keep rewriting them in place. They are thus replaced by copies.
+  private void freezeAssignments() {
+    mAss.replaceAll((k, stmt) -> stmt.getParentNode().isPresent() ? stmt.clone() : stmt);
+  }
+
+  // Wraps the nested statements of loops and ifs in blocks in a single walk.
   private void ensureBlkStmts(final CompilationUnit cu) {
     cu.accept(new ModifierVisitor<Void>() {
       @Override
@@ -107,8 +110,7 @@ public class Normalizer {
         stmt.setBody(body);
         return stmt;
       }
-    }, null);
-    cu.accept(new ModifierVisitor<Void>() {
+
       @Override
       public Node visit(final ForEachStmt stmt, final Void args) {
         super.visit(stmt, args);
@@ -116,8 +118,7 @@ public class Normalizer {
         stmt.setBody(body);
         return stmt;
       }
-    }, null);
-    cu.accept(new ModifierVisitor<Void>() {
+
       @Override
       public Node visit(final WhileStmt stmt, final Void args) {
         super.visit(stmt, args);
@@ -125,8 +126,7 @@ public class Normalizer {
         stmt.setBody(body);
         return stmt;
       }
-    }, null);
-    cu.accept(new ModifierVisitor<Void>() {
+
       @Override
       public Node visit(final DoStmt stmt, final Void args) {
         super.visit(stmt, args);
@@ -134,8 +134,7 @@ public class Normalizer {
         stmt.setBody(body);
         return stmt;
       }
-    }, null);
-    cu.accept(new ModifierVisitor<Void>() {
+
       @Override
       public Node visit(final IfStmt stmt, final Void args) {
         super.visit(stmt, args);
@@ -264,11 +263,8 @@ public class Normalizer {
     if (condition instanceof NameExpr) {
       final List<ExpressionStmt> exprs = new ArrayList<>();
       solveDeps(condition, parentStmt, exprs, alreadySolved);
-      AssignExpr assign = null;
-      for (final ExpressionStmt n : exprs) {
-        assign = varDecl2Assign(n);
-        result = addToBody(body, assign);
-      }
+      for (final ExpressionStmt n : exprs)
+        result = addToBody(body, varDecl2Assign(n));
     } else if (condition instanceof BinaryExpr) {
       final BinaryExpr binCond = (BinaryExpr) condition;
       final Expression left = binCond.getLeft();
@@ -278,15 +274,10 @@ public class Normalizer {
       final List<ExpressionStmt> rightExpr = new ArrayList<>();
       solveDeps(right, parentStmt, rightExpr, alreadySolved);
 
-      AssignExpr assign = null;
-      for (final ExpressionStmt n : leftExpr) {
-        assign = varDecl2Assign(n);
-        result = addToBody(body, assign);
-      }
-      for (final ExpressionStmt n : rightExpr) {
-        assign = varDecl2Assign(n);
-        result = addToBody(body, assign);
-      }
+      for (final ExpressionStmt n : leftExpr)
+        result = addToBody(body, varDecl2Assign(n));
+      for (final ExpressionStmt n : rightExpr)
+        result = addToBody(body, varDecl2Assign(n));
     }
     return result;
   }
@@ -336,6 +327,17 @@ public class Normalizer {
     return result;
   }
 
+  private Statement addToBody(final Statement body, final Statement n) {
+    if (body instanceof BlockStmt) {
+      ((BlockStmt) body).addStatement(n);
+      return body;
+    }
+    final BlockStmt blk = new BlockStmt();
+    blk.addStatement(body);
+    blk.addStatement(n);
+    return blk;
+  }
+
   private Statement addToBody(final Statement body, final Statement n, final int pos) {
     Statement result = body;
     if (body instanceof BlockStmt)
@@ -493,17 +495,18 @@ public class Normalizer {
     return n;
   }
 
-  private AssignExpr varDecl2Assign(final ExpressionStmt expr) {
+  private ExpressionStmt varDecl2Assign(final ExpressionStmt expr) {
     final Expression e = expr.getExpression();
+    // The assignment stays where it is, so the loop body gets a copy.
     if (e instanceof AssignExpr)
-      return (AssignExpr) e;
+      return new ExpressionStmt(e.clone());
     final Node firstChild = e.getChildNodes().get(0);
     if (firstChild instanceof VariableDeclarator) {
       final VariableDeclarator varDecl = (VariableDeclarator) firstChild;
       final NameExpr name = new NameExpr(varDecl.getName().asString());
-      final Expression init = varDecl.getInitializer().get();
-      final AssignExpr result = new AssignExpr(name, init, Operator.ASSIGN);
-      result.setComment(findParentComment(expr));
+      final Expression init = varDecl.getInitializer().get().clone();
+      final ExpressionStmt result = new ExpressionStmt(new AssignExpr(name, init, Operator.ASSIGN));
+      result.setComment(findParentComment(expr).clone());
       return result;
     }
     return null;
@@ -539,7 +542,7 @@ public class Normalizer {
 
   private Expression recNorm(final AssignExpr expr) {
     final Node parentStmt = findParentStmt(expr);
-    final ExpressionStmt assign = new ExpressionStmt(expr);
+    final ExpressionStmt assign = new ExpressionStmt(expr.clone());
     expressions.add(assign);
     final Expression target = expr.getTarget();
     if (target instanceof NameExpr) {
@@ -554,9 +557,7 @@ public class Normalizer {
 
   private Expression recNorm(final MethodCallExpr expr) {
     final String variableName = nextVarId();
-    final VariableDeclarator varDeclarator =
-        new VariableDeclarator(typeFor(expr), variableName, expr);
-    final VariableDeclarationExpr varDeclExpr = new VariableDeclarationExpr(varDeclarator);
+    final VariableDeclarationExpr varDeclExpr = variableDeclaratorExpr(variableName, expr);
     final ExpressionStmt assign = new ExpressionStmt(varDeclExpr);
     expressions.add(assign);
     final Expression result = new NameExpr(variableName);
@@ -582,11 +583,14 @@ public class Normalizer {
     return result;
   }
 
+  // The visitor replaces the initializer with the fresh variable, which detaches it from
+  // whatever parent it is given here. The declaration is thus given a copy.
   private VariableDeclarationExpr variableDeclaratorExpr(final String variableName,
       final Expression initializer) {
     final Type type = typeFor(initializer);
-    final VariableDeclarator varDeclarator =
-        new VariableDeclarator(type, variableName, initializer);
+    final Expression init = initializer.clone();
+    init.removeComment();
+    final VariableDeclarator varDeclarator = new VariableDeclarator(type, variableName, init);
     return new VariableDeclarationExpr(varDeclarator);
   }
 
@@ -707,11 +711,16 @@ public class Normalizer {
   }
 
   private Type defaultType() {
-    return javaParser.parseClassOrInterfaceType("Object").getResult().get();
+    return new ClassOrInterfaceType(null, "Object");
   }
 
+  // Nodes introduced by the normalization have no position, so the closest positioned
+  // ancestor is used.
   private int getBeginLine(final Node n) {
-    return n.getBegin().get().line;
+    final Optional<Position> begin = n.getBegin();
+    if (begin.isPresent())
+      return begin.get().line;
+    return n.getParentNode().map(this::getBeginLine).orElse(0);
   }
 
   private Comment findParentComment(final Node node) {
@@ -726,6 +735,9 @@ public class Normalizer {
   private Statement changeNestedStmtToBlk(final Statement stmt) {
     if (!(stmt instanceof BlockStmt)) {
       final BlockStmt blk = new BlockStmt();
+      // Put the block in place first so that the statement is not detached when the caller
+      // sets it.
+      stmt.replace(blk);
       blk.addStatement(stmt);
       return blk;
     }
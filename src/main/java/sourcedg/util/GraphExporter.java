@@ -81,6 +81,7 @@ public class GraphExporter {
 				case CALL:
 				case PARAM_IN:
 				case PARAM_OUT:
+				case SUMMARY:
 					result.put("style", DefaultAttribute.createAttribute("dotted"));
 					result.put("constraint", DefaultAttribute.createAttribute(false));
 					break;
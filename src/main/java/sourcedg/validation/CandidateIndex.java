@@ -0,0 +1,85 @@
+package sourcedg.validation;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.Graph;
+
+import com.github.javaparser.ast.Node;
+
+import sourcedg.graph.Edge;
+import sourcedg.graph.Vertex;
+import sourcedg.graph.VertexType;
+
+/*
+ * Vertices of a graph by type, by subtype and by AST node, to be built once and
+ * shared by every query matched against it. Lists keep the order of the vertex
+ * set.
+ *
+ * The graph must not change while in use.
+ */
+public class CandidateIndex {
+
+	private final List<Vertex> all;
+	private final Map<VertexType, List<Vertex>> byType;
+	private final Map<String, List<Vertex>> bySubtype;
+	private final Map<Node, List<Vertex>> byAst;
+
+	public CandidateIndex(final Graph<Vertex, Edge> g) {
+		all = new ArrayList<>(g.vertexSet());
+		byType = new EnumMap<>(VertexType.class);
+		bySubtype = new HashMap<>();
+		byAst = new IdentityHashMap<>();
+		for (final Vertex v : all) {
+			if (v.getType() != null)
+				byType.computeIfAbsent(v.getType(), t -> new ArrayList<>()).add(v);
+			for (final String s : v.getSubtypes())
+				bySubtype.computeIfAbsent(s, t -> new ArrayList<>()).add(v);
+			if (v.getAst() != null)
+				byAst.computeIfAbsent(v.getAst(), n -> new ArrayList<>(1)).add(v);
+		}
+	}
+
+	// Vertices of the given type originated from the given AST node, null for any.
+	public List<Vertex> candidates(final VertexType type, final Node ast) {
+		if (ast != null) {
+			final List<Vertex> l = byAst.getOrDefault(ast, Collections.emptyList());
+			if (type == null)
+				return l;
+			final List<Vertex> result = new ArrayList<>(l.size());
+			for (final Vertex v : l)
+				if (type.equals(v.getType()))
+					result.add(v);
+			return result;
+		}
+		if (type != null)
+			return byType.getOrDefault(type, Collections.emptyList());
+		return all;
+	}
+
+	// Same, only the vertices having all the given subtypes. The shortest of the
+	// lists they must be in is the one filtered.
+	public List<Vertex> candidates(final VertexType type, final Node ast, final Set<String> subtypes) {
+		if (subtypes.isEmpty())
+			return candidates(type, ast);
+		List<Vertex> shortest = candidates(type, ast);
+		for (final String s : subtypes) {
+			final List<Vertex> l = bySubtype.getOrDefault(s, Collections.emptyList());
+			if (l.size() < shortest.size())
+				shortest = l;
+		}
+		final List<Vertex> result = new ArrayList<>();
+		for (final Vertex v : shortest)
+			if ((type == null || type.equals(v.getType())) && (ast == null || ast == v.getAst())
+					&& v.getSubtypes().containsAll(subtypes))
+				result.add(v);
+		return result;
+	}
+
+}
@@ -0,0 +1,140 @@
+package sourcedg.validation;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import sourcedg.graph.EdgeType;
+import sourcedg.graph.Vertex;
+
+/*
+ * Matches of the two-node subpatterns of the queries of a batch: a query edge
+ * between the candidates of two query nodes. The table of such an edge gives,
+ * for every candidate of one end, the candidates of the other end the edge
+ * allows, a row computed the first time that candidate is mapped. Every query
+ * with the same edge between the same candidates, and every visit of the same
+ * candidate while backtracking, reads the same row.
+ *
+ * Tables covering more candidate pairs than the budget left are not built, the
+ * matching checks those edges against the reachability instead.
+ */
+class EdgeTables {
+
+	// Candidate pairs all the tables may cover.
+	static final long BUDGET = 1L << 22;
+
+	private final Reachability reach;
+	private final Map<Key, Table> tables = new HashMap<>();
+	private long budget = BUDGET;
+
+	EdgeTables(final Reachability reach) {
+		this.reach = reach;
+	}
+
+	// Table over rows x cols of an edge from the row to the column vertex if out,
+	// the other way around otherwise. Null once over budget. The lists must not
+	// change while in use.
+	Table table(final List<Vertex> rows, final List<Vertex> cols, final boolean out, final boolean path,
+			final Set<EdgeType> types) {
+		final Key key = new Key(rows, cols, out, path, types);
+		Table result = tables.get(key);
+		if (result == null) {
+			final long cells = (long) rows.size() * cols.size();
+			if (cells > budget)
+				return null;
+			budget -= cells;
+			result = new Table(rows.toArray(new Vertex[rows.size()]), cols.toArray(new Vertex[cols.size()]), out,
+					path, reach.restrictedTo(types));
+			tables.put(key, result);
+		}
+		return result;
+	}
+
+	static class Table {
+
+		private final Vertex[] rows;
+		private final Vertex[] cols;
+		private final boolean out;
+		private final boolean path;
+		private final Reachability reach;
+		// Sorted column indices per row, as needed.
+		private final AtomicReferenceArray<int[]> compatible;
+
+		Table(final Vertex[] rows, final Vertex[] cols, final boolean out, final boolean path,
+				final Reachability reach) {
+			this.rows = rows;
+			this.cols = cols;
+			this.out = out;
+			this.path = path;
+			this.reach = reach;
+			compatible = new AtomicReferenceArray<>(rows.length);
+		}
+
+		// Columns the edge allows with row r.
+		int[] row(final int r) {
+			int[] result = compatible.get(r);
+			if (result == null) {
+				final Vertex u = rows[r];
+				int[] cs = new int[cols.length];
+				int k = 0;
+				for (int c = 0; c < cols.length; c++)
+					if (allowed(u, cols[c]))
+						cs[k++] = c;
+				result = k == cs.length ? cs : Arrays.copyOf(cs, k);
+				compatible.compareAndSet(r, null, result);
+			}
+			return result;
+		}
+
+		boolean allows(final int r, final int c) {
+			return Arrays.binarySearch(row(r), c) >= 0;
+		}
+
+		private boolean allowed(final Vertex u, final Vertex v) {
+			final Vertex s = out ? u : v, t = out ? v : u;
+			return path ? reach.hasPath(s, t) : reach.hasEdge(s, t);
+		}
+
+	}
+
+	// Candidate lists compared by identity, they come from the batch's cache.
+	private static class Key {
+
+		final List<Vertex> rows;
+		final List<Vertex> cols;
+		final boolean out;
+		final boolean path;
+		final Set<EdgeType> types;
+
+		Key(final List<Vertex> rows, final List<Vertex> cols, final boolean out, final boolean path,
+				final Set<EdgeType> types) {
+			this.rows = rows;
+			this.cols = cols;
+			this.out = out;
+			this.path = path;
+			this.types = types;
+		}
+
+		@Override
+		public boolean equals(final Object o) {
+			if (!(o instanceof Key))
+				return false;
+			final Key k = (Key) o;
+			return rows == k.rows && cols == k.cols && out == k.out && path == k.path
+					&& Objects.equals(types, k.types);
+		}
+
+		@Override
+		public int hashCode() {
+			int h = 31 * System.identityHashCode(rows) + System.identityHashCode(cols);
+			h = 4 * h + (out ? 2 : 0) + (path ? 1 : 0);
+			return 31 * h + Objects.hashCode(types);
+		}
+
+	}
+
+}
@@ -0,0 +1,98 @@
+package sourcedg.validation;
+
+import java.lang.ref.SoftReference;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.jgrapht.Graph;
+
+import sourcedg.builder.CorpusResult;
+import sourcedg.builder.PDGBuilder;
+import sourcedg.graph.Edge;
+import sourcedg.graph.PDG;
+import sourcedg.graph.Vertex;
+import sourcedg.validation.SubgraphQuery.SubgraphQueryNode;
+
+/*
+ * Pattern queries over many graphs, the PDGs of a corpus for instance. The
+ * indexes of a graph are built the first time it is searched and kept for the
+ * queries that follow, softly so that they go when memory runs short. With a
+ * capacity, only those of the first capacity graphs are kept and the others are
+ * built again by every query: a query visits every graph in order, which would
+ * evict each one before its next use under least recently used. Kept indexes
+ * describe a graph as it was when it was first searched, clear() drops them all
+ * once some graph changed.
+ */
+public class PatternSearch<G extends Graph<Vertex, Edge>> {
+
+	private final List<G> graphs;
+	private final List<SoftReference<QueryBatch>> batches;
+
+	// Keeps the indexes of every graph.
+	public PatternSearch(final Collection<? extends G> graphs) {
+		this(graphs, Integer.MAX_VALUE);
+	}
+
+	public PatternSearch(final Collection<? extends G> graphs, final int capacity) {
+		if (capacity <= 0)
+			throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+		this.graphs = new ArrayList<>(graphs);
+		batches = new ArrayList<>(Collections.nCopies(Math.min(capacity, this.graphs.size()), null));
+	}
+
+	// The PDGs of the files built successfully.
+	public static PatternSearch<PDG> of(final CorpusResult corpus) {
+		final List<PDG> pdgs = new ArrayList<>();
+		for (final PDGBuilder builder : corpus.getBuilders().values())
+			pdgs.add(builder.getPDG());
+		return new PatternSearch<>(pdgs);
+	}
+
+	public List<G> getGraphs() {
+		return graphs;
+	}
+
+	// Graphs with at least one match of q, in the order they were given, with up
+	// to limit matches each.
+	public Map<G, Set<Map<SubgraphQueryNode, Vertex>>> search(final SubgraphQuery q, final int limit) {
+		final Map<G, Set<Map<SubgraphQueryNode, Vertex>>> result = new LinkedHashMap<>();
+		for (int i = 0; i < graphs.size(); i++) {
+			final Set<Map<SubgraphQueryNode, Vertex>> solutions = batch(i).match(q, limit);
+			if (!solutions.isEmpty())
+				result.put(graphs.get(i), solutions);
+		}
+		return result;
+	}
+
+	// Graphs with at least one match of q, in the order they were given.
+	public List<G> find(final SubgraphQuery q) {
+		final List<G> result = new ArrayList<>();
+		for (int i = 0; i < graphs.size(); i++)
+			if (batch(i).matches(q).hasNext())
+				result.add(graphs.get(i));
+		return result;
+	}
+
+	// Forgets the kept indexes, rebuilt from the current graphs when next searched.
+	public void clear() {
+		Collections.fill(batches, null);
+	}
+
+	private QueryBatch batch(final int i) {
+		if (i >= batches.size())
+			return new QueryBatch(graphs.get(i));
+		final SoftReference<QueryBatch> ref = batches.get(i);
+		QueryBatch result = ref == null ? null : ref.get();
+		if (result == null) {
+			result = new QueryBatch(graphs.get(i));
+			batches.set(i, new SoftReference<>(result));
+		}
+		return result;
+	}
+
+}
@@ -0,0 +1,143 @@
+package sourcedg.validation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+
+import org.jgrapht.Graph;
+
+import com.github.javaparser.ast.Node;
+
+import sourcedg.graph.Edge;
+import sourcedg.graph.EdgeType;
+import sourcedg.graph.Vertex;
+import sourcedg.graph.VertexType;
+import sourcedg.validation.SubgraphQuery.SubgraphQueryEdge;
+import sourcedg.validation.SubgraphQuery.SubgraphQueryNode;
+
+/*
+ * All the queries matched against one graph. The reachability and the
+ * candidate index are built once, and the candidates of query nodes with the
+ * same type, AST node, subtypes and self-loop are computed once. The matches of
+ * their common subpatterns are shared too: the vertex pairs a query edge allows
+ * between two candidate lists are kept in the edge tables, and any later query
+ * with that edge between the same candidates reads them. Whole solutions are
+ * not kept.
+ *
+ * The indexes, the candidates and the tables describe the graph as it was when
+ * the batch was created, a new batch is needed once the graph changed.
+ */
+public class QueryBatch {
+
+	private final Graph<Vertex, Edge> g;
+	private final Reachability reach;
+	private final CandidateIndex candidates;
+	private final EdgeTables tables;
+	// Searches the queries in parallel unless null.
+	private final ForkJoinPool pool;
+	private final Map<NodeKey, List<Vertex>> searchSpaces = new HashMap<>();
+
+	public QueryBatch(Graph<Vertex, Edge> g) {
+		this(g, null);
+	}
+
+	// Same solutions as a sequential batch, each query searched by the given pool.
+	public QueryBatch(Graph<Vertex, Edge> g, ForkJoinPool pool) {
+		this.g = g;
+		this.pool = pool;
+		reach = new Reachability(g);
+		candidates = new CandidateIndex(g);
+		tables = new EdgeTables(reach);
+	}
+
+	public Graph<Vertex, Edge> getGraph() {
+		return g;
+	}
+
+	public Reachability getReachability() {
+		return reach;
+	}
+
+	public CandidateIndex getCandidates() {
+		return candidates;
+	}
+
+	// Solutions of each query, up to limit per query, in the same order.
+	public List<Set<Map<SubgraphQueryNode, Vertex>>> matchAll(List<SubgraphQuery> queries, int limit) {
+		List<Set<Map<SubgraphQueryNode, Vertex>>> result = new ArrayList<>(queries.size());
+		for (SubgraphQuery q : queries)
+			result.add(match(q, limit));
+		return result;
+	}
+
+	// Up to limit solutions of q.
+	public Set<Map<SubgraphQueryNode, Vertex>> match(SubgraphQuery q, int limit) {
+		if (pool != null)
+			return new HashSet<>(SubgraphMatching.parallelMatches(plan(q), limit, pool));
+		Set<Map<SubgraphQueryNode, Vertex>> result = new HashSet<>();
+		for (Iterator<Map<SubgraphQueryNode, Vertex>> it = matches(q); result.size() < limit && it.hasNext(); )
+			result.add(it.next());
+		return result;
+	}
+
+	// Every match of q, lazily.
+	public Iterator<Map<SubgraphQueryNode, Vertex>> matches(SubgraphQuery q) {
+		return SubgraphMatching.matches(plan(q));
+	}
+
+	// Null if some query node has no candidates.
+	private QueryPlan plan(SubgraphQuery q) {
+		Map<SubgraphQueryNode, List<Vertex>> ss = new HashMap<>();
+		for (SubgraphQueryNode u : q.vertexSet()) {
+			SubgraphQueryEdge loop = q.getEdge(u, u);
+			List<Vertex> l = searchSpaces.computeIfAbsent(new NodeKey(u, loop),
+					k -> SubgraphMatching.searchSpace(g, candidates, u, loop));
+			if (l.isEmpty())
+				return null;
+			ss.put(u, l);
+		}
+		return QueryPlan.compile(q, ss, reach, tables);
+	}
+
+	// Query node up to identity: AST nodes are compared by identity.
+	private static class NodeKey {
+
+		final VertexType type;
+		final Node ast;
+		final Set<String> subtypes;
+		final boolean loop;
+		final Set<EdgeType> loopTypes;
+
+		NodeKey(SubgraphQueryNode u, SubgraphQueryEdge loop) {
+			type = u.type;
+			ast = u.ast;
+			subtypes = u.subtypes;
+			this.loop = loop != null;
+			loopTypes = loop == null ? null : loop.types;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof NodeKey))
+				return false;
+			NodeKey k = (NodeKey) o;
+			return type == k.type && ast == k.ast && subtypes.equals(k.subtypes) && loop == k.loop
+					&& Objects.equals(loopTypes, k.loopTypes);
+		}
+
+		@Override
+		public int hashCode() {
+			int h = 31 * (type == null ? 0 : type.hashCode()) + System.identityHashCode(ast);
+			h = 31 * h + subtypes.hashCode();
+			return 31 * (h * 2 + (loop ? 1 : 0)) + Objects.hashCode(loopTypes);
+		}
+
+	}
+
+}
@@ -0,0 +1,252 @@
+package sourcedg.validation;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import sourcedg.graph.Vertex;
+import sourcedg.validation.SubgraphQuery.SubgraphQueryEdge;
+import sourcedg.validation.SubgraphQuery.SubgraphQueryNode;
+
+/*
+ * A query compiled against the search space and the reachability of a graph:
+ * the matching order and, for every position, the candidates and the checks
+ * against the vertices already mapped at earlier positions, all in arrays.
+ * Immutable.
+ *
+ * The order starts with the node with the fewest candidates and then takes the
+ * neighbor of the nodes already ordered that is cheapest, halving the number of
+ * candidates for every ordered neighbor. Once the component of the first node
+ * is ordered, the next component starts with its node with the fewest
+ * candidates, and so on: there are no checks between the positions of
+ * different components, every combination of their matches is a match.
+ *
+ * Given the edge tables of a batch, the edges to earlier positions are checked
+ * through the tables instead, and the first of them gives the candidates to try:
+ * the row of the candidate mapped at the earlier position.
+ *
+ * For induced queries, the vertex mapped at a position must also be different
+ * from, and neither reach nor be reached from, the vertices mapped at the
+ * earlier positions whose nodes are not adjacent to it.
+ */
+public class QueryPlan {
+
+	private final SubgraphQueryNode[] nodes;
+	private final Vertex[][] candidates;
+	// Per position: earlier positions to check, whether the query edge goes from
+	// this position to the earlier one, whether it stands for a path and the
+	// lookups over the edge types it may follow.
+	private final int[][] checkPos;
+	private final boolean[][] checkOut;
+	private final boolean[][] checkPath;
+	private final Reachability[][] checkReach;
+	// Per position and check: the table of the edge, rows at the earlier position,
+	// null to check through checkReach. The first check with a table drives the
+	// candidates to try, -1 if none.
+	private final EdgeTables.Table[][] checkTable;
+	private final int[] driver;
+	// Per position: earlier positions not adjacent to it, empty unless induced.
+	private final int[][] apartPos;
+	private final Reachability reach;
+
+	private QueryPlan(SubgraphQueryNode[] nodes, Vertex[][] candidates, int[][] checkPos, boolean[][] checkOut,
+			boolean[][] checkPath, Reachability[][] checkReach, EdgeTables.Table[][] checkTable, int[] driver,
+			int[][] apartPos, Reachability reach) {
+		this.nodes = nodes;
+		this.candidates = candidates;
+		this.checkPos = checkPos;
+		this.checkOut = checkOut;
+		this.checkPath = checkPath;
+		this.checkReach = checkReach;
+		this.checkTable = checkTable;
+		this.driver = driver;
+		this.apartPos = apartPos;
+		this.reach = reach;
+	}
+
+	// Null if some query node has no candidates.
+	public static QueryPlan compile(SubgraphQuery query, Map<SubgraphQueryNode, List<Vertex>> searchSpace,
+			Reachability reach) {
+		return compile(query, searchSpace, reach, null);
+	}
+
+	// Same, checking edges through the given tables, if any, whose lists are
+	// those of the search space.
+	static QueryPlan compile(SubgraphQuery query, Map<SubgraphQueryNode, List<Vertex>> searchSpace,
+			Reachability reach, EdgeTables tables) {
+		int k = query.vertexSet().size();
+		SubgraphQueryNode[] all = query.vertexSet().toArray(new SubgraphQueryNode[k]);
+		Map<SubgraphQueryNode, Integer> index = new IdentityHashMap<>(k);
+		for (int i = 0; i < k; i++)
+			index.put(all[i], i);
+		int first = -1;
+		int[] sizes = new int[k];
+		for (int i = 0; i < k; i++) {
+			List<Vertex> l = searchSpace.get(all[i]);
+			if (l == null || l.isEmpty())
+				return null;
+			sizes[i] = l.size();
+			if (first < 0 || sizes[first] > sizes[i])
+				first = i;
+		}
+		if (k == 0)
+			return new QueryPlan(new SubgraphQueryNode[0], new Vertex[0][], new int[0][], new boolean[0][],
+					new boolean[0][], new Reachability[0][], new EdgeTables.Table[0][], new int[0], new int[0][], reach);
+
+		// Undirected adjacency without self-loops.
+		boolean[][] adjacent = new boolean[k][k];
+		for (SubgraphQueryEdge e : query.edgeSet()) {
+			int s = index.get(e.src), t = index.get(e.tgt);
+			if (s != t)
+				adjacent[s][t] = adjacent[t][s] = true;
+		}
+
+		int[] order = new int[k];
+		int[] position = new int[k];
+		for (int i = 0; i < k; i++)
+			position[i] = -1;
+		int n = 0;
+		order[n] = first;
+		position[first] = n++;
+		while (true) {
+			int next = -1;
+			double minCost = Double.MAX_VALUE;
+			for (int u = 0; u < k; u++) {
+				if (position[u] >= 0)
+					continue;
+				int ordered = 0;
+				for (int j = 0; j < n; j++)
+					if (adjacent[u][order[j]])
+						ordered++;
+				if (ordered == 0)
+					continue;
+				double cost = sizes[u] * Math.pow(0.5, ordered);
+				if (cost < minCost) {
+					next = u;
+					minCost = cost;
+				}
+			}
+			if (next < 0) {
+				if (n == k)
+					break;
+				// Start of the next component.
+				for (int u = 0; u < k; u++)
+					if (position[u] < 0 && (next < 0 || sizes[next] > sizes[u]))
+						next = u;
+			}
+			order[n] = next;
+			position[next] = n++;
+		}
+
+		SubgraphQueryNode[] nodes = new SubgraphQueryNode[n];
+		Vertex[][] candidates = new Vertex[n][];
+		int[][] checkPos = new int[n][];
+		boolean[][] checkOut = new boolean[n][];
+		boolean[][] checkPath = new boolean[n][];
+		Reachability[][] checkReach = new Reachability[n][];
+		EdgeTables.Table[][] checkTable = new EdgeTables.Table[n][];
+		int[] driver = new int[n];
+		int[][] apartPos = new int[n][];
+		for (int i = 0; i < n; i++) {
+			int u = order[i];
+			nodes[i] = all[u];
+			candidates[i] = searchSpace.get(all[u]).toArray(new Vertex[sizes[u]]);
+			List<Integer> earlier = new ArrayList<>();
+			List<Integer> apart = new ArrayList<>();
+			for (int j = 0; j < i; j++)
+				if (adjacent[u][order[j]])
+					earlier.add(j);
+				else if (query.isInduced())
+					apart.add(j);
+			apartPos[i] = new int[apart.size()];
+			for (int c = 0; c < apart.size(); c++)
+				apartPos[i][c] = apart.get(c);
+			checkPos[i] = new int[earlier.size()];
+			checkOut[i] = new boolean[earlier.size()];
+			checkPath[i] = new boolean[earlier.size()];
+			checkReach[i] = new Reachability[earlier.size()];
+			checkTable[i] = new EdgeTables.Table[earlier.size()];
+			driver[i] = -1;
+			for (int c = 0; c < earlier.size(); c++) {
+				int j = earlier.get(c);
+				// The edge from this node is the one checked when there are both.
+				SubgraphQueryEdge e = query.getEdge(all[u], all[order[j]]);
+				checkOut[i][c] = e != null;
+				if (e == null)
+					e = query.getEdge(all[order[j]], all[u]);
+				checkPos[i][c] = j;
+				checkPath[i][c] = e.isPath;
+				checkReach[i][c] = reach.restrictedTo(e.types);
+				if (tables != null) {
+					// Rows at the earlier position, so the edge goes out of the row if it
+					// comes into this position.
+					checkTable[i][c] = tables.table(searchSpace.get(all[order[j]]), searchSpace.get(all[u]),
+							!checkOut[i][c], e.isPath, e.types);
+					if (checkTable[i][c] != null && driver[i] < 0)
+						driver[i] = c;
+				}
+			}
+		}
+		return new QueryPlan(nodes, candidates, checkPos, checkOut, checkPath, checkReach, checkTable, driver,
+				apartPos, reach);
+	}
+
+	// Number of positions in the matching order.
+	public int size() {
+		return nodes.length;
+	}
+
+	public SubgraphQueryNode node(int i) {
+		return nodes[i];
+	}
+
+	public int candidateCount(int i) {
+		return candidates[i].length;
+	}
+
+	public Vertex candidate(int i, int c) {
+		return candidates[i][c];
+	}
+
+	// Candidates to try at position i given the candidates mapped at the earlier
+	// positions, null for all of them.
+	public int[] choices(int i, int[] mappedIdx) {
+		int d = driver[i];
+		return d < 0 ? null : checkTable[i][d].row(mappedIdx[checkPos[i][d]]);
+	}
+
+	// Whether candidate c can be mapped at position i given the candidates mapped
+	// at the earlier positions, once among the choices.
+	public boolean canMap(int i, int c, int[] mappedIdx, Vertex[] mapped) {
+		Vertex v = candidates[i][c];
+		int[] pos = checkPos[i];
+		for (int k = 0; k < pos.length; k++) {
+			if (k == driver[i])
+				continue;
+			EdgeTables.Table t = checkTable[i][k];
+			if (t != null) {
+				if (!t.allows(mappedIdx[pos[k]], c))
+					return false;
+				continue;
+			}
+			Vertex o = mapped[pos[k]];
+			Reachability r = checkReach[i][k];
+			// Paths of at least one edge, which rules out v == o.
+			boolean ok;
+			if (checkOut[i][k])
+				ok = checkPath[i][k] ? r.hasPath(v, o) : r.hasEdge(v, o);
+			else
+				ok = checkPath[i][k] ? r.hasPath(o, v) : r.hasEdge(o, v);
+			if (!ok)
+				return false;
+		}
+		for (int j : apartPos[i]) {
+			Vertex o = mapped[j];
+			if (v == o || reach.hasPath(v, o) || reach.hasPath(o, v))
+				return false;
+		}
+		return true;
+	}
+
+}
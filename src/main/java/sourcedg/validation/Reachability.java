@@ -0,0 +1,361 @@
+package sourcedg.validation;
+
+import java.util.Arrays;
+import java.util.EnumSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jgrapht.Graph;
+
+import sourcedg.graph.Edge;
+import sourcedg.graph.EdgeType;
+import sourcedg.graph.Vertex;
+
+/*
+ * Path and edge lookups on a graph, to be built once and shared by every query
+ * matched against it. Up to CLOSURE_LIMIT vertices, the transitive closure is
+ * computed upfront, one bitset per strongly connected component. Larger graphs
+ * get GRAIL labels instead: a few intervals per component, from randomized
+ * depth-first traversals of the component DAG, that contain the intervals of
+ * every component it reaches. A path is ruled out as soon as some interval is
+ * not contained, otherwise the DAG is searched, pruned by the same test. Both
+ * take O(n + m) memory. The same lookups over the edges of some types only are
+ * built as needed and kept by restrictedTo.
+ *
+ * The graph must not change while in use.
+ */
+public class Reachability {
+
+	private static final int CLOSURE_LIMIT = 4096;
+	// Intervals per component above it.
+	private static final int LABELS = 3;
+	private static final long SEED = 0x5DEECE66DL;
+
+	private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+	private final Graph<Vertex, Edge> g;
+	private final Set<EdgeType> types;
+	// The lookups following all edges, which keeps the restricted ones.
+	private final Reachability all;
+	private final Map<Set<EdgeType>, Reachability> restricted;
+	private final Map<Vertex, Integer> index;
+	private final int words;
+	// Successors of each vertex, sorted.
+	private final int[] outStart;
+	private final int[] outTarget;
+	// Strongly connected component of each vertex. Edges between components go
+	// from higher to lower numbers.
+	private final int[] comp;
+	private final int comps;
+	// Closure: vertices reachable from each component.
+	private long[] closure;
+	// Otherwise: successors of each component and its LABELS intervals, those of
+	// the t-th traversal at t * comps.
+	private int[] dagStart;
+	private int[] dagTarget;
+	private int[] labelLow;
+	private int[] labelHigh;
+
+	public Reachability(final Graph<Vertex, Edge> g) {
+		this(g, null, null);
+	}
+
+	private Reachability(final Graph<Vertex, Edge> g, final Set<EdgeType> types, final Reachability all) {
+		this.g = g;
+		this.types = types;
+		this.all = all == null ? this : all;
+		restricted = all == null ? new ConcurrentHashMap<>() : null;
+		final int n = g.vertexSet().size();
+		final Vertex[] vertices = g.vertexSet().toArray(new Vertex[n]);
+		index = new IdentityHashMap<>(n);
+		for (int i = 0; i < n; i++)
+			index.put(vertices[i], i);
+		words = (n + 63) >>> 6;
+		outStart = new int[n + 1];
+		int[] targets = new int[g.edgeSet().size()];
+		int k = 0;
+		for (int i = 0; i < n; i++) {
+			outStart[i] = k;
+			for (final Edge e : g.outgoingEdgesOf(vertices[i]))
+				if (this.types == null || this.types.contains(e.getType()))
+					targets[k++] = index.get(g.getEdgeTarget(e));
+			Arrays.sort(targets, outStart[i], k);
+		}
+		outStart[n] = k;
+		outTarget = k == targets.length ? targets : Arrays.copyOf(targets, k);
+		comp = new int[n];
+		comps = computeComponents(n);
+		// Vertices grouped by component.
+		final int[] memberStart = new int[comps + 1];
+		final int[] member = new int[n];
+		for (int v = 0; v < n; v++)
+			memberStart[comp[v] + 1]++;
+		for (int c = 0; c < comps; c++)
+			memberStart[c + 1] += memberStart[c];
+		final int[] next = Arrays.copyOf(memberStart, comps);
+		for (int v = 0; v < n; v++)
+			member[next[comp[v]]++] = v;
+		if (n <= CLOSURE_LIMIT)
+			computeClosure(memberStart, member);
+		else
+			computeLabels(memberStart, member);
+	}
+
+	public Graph<Vertex, Edge> getGraph() {
+		return g;
+	}
+
+	// Edge types followed, null for all.
+	public Set<EdgeType> getEdgeTypes() {
+		return types;
+	}
+
+	// The lookups over the edges of the given types only, null for all. Built
+	// the first time they are asked and shared from then on.
+	public Reachability restrictedTo(final Set<EdgeType> types) {
+		if (types == null)
+			return all;
+		if (all != this)
+			return all.restrictedTo(types);
+		final Reachability result = restricted.get(types);
+		if (result != null)
+			return result;
+		return restricted.computeIfAbsent(copy(types), t -> new Reachability(g, t, this));
+	}
+
+	private static Set<EdgeType> copy(final Set<EdgeType> types) {
+		final Set<EdgeType> result = EnumSet.noneOf(EdgeType.class);
+		result.addAll(types);
+		return result;
+	}
+
+	// Whether there is a path of at least one edge from u to a different vertex v.
+	public boolean hasPath(final Vertex u, final Vertex v) {
+		final int s = indexOf(u), t = indexOf(v);
+		if (s == t)
+			return false;
+		if (closure != null)
+			return (closure[comp[s] * words + (t >>> 6)] & (1L << t)) != 0;
+		// Two vertices of the same component are on a cycle.
+		return comp[s] == comp[t] || reaches(comp[s], comp[t]);
+	}
+
+	// Whether there is an edge from u to a different vertex v.
+	public boolean hasEdge(final Vertex u, final Vertex v) {
+		final int s = indexOf(u), t = indexOf(v);
+		return s != t && Arrays.binarySearch(outTarget, outStart[s], outStart[s + 1], t) >= 0;
+	}
+
+	private int indexOf(final Vertex v) {
+		final Integer i = index.get(v);
+		if (i == null)
+			throw new IllegalArgumentException("no such vertex in graph: " + v);
+		return i;
+	}
+
+	// Tarjan's algorithm, which finishes the components a component reaches
+	// before the component itself. Returns the number of components.
+	private int computeComponents(final int n) {
+		Arrays.fill(comp, -1);
+		final int[] idx = new int[n];
+		final int[] low = new int[n];
+		Arrays.fill(idx, -1);
+		final int[] sccStack = new int[n];
+		final int[] callStack = new int[n];
+		final int[] callPos = new int[n];
+		int counter = 0, result = 0, ssp = 0, csp = 0;
+		for (int r = 0; r < n; r++) {
+			if (idx[r] >= 0)
+				continue;
+			idx[r] = low[r] = counter++;
+			sccStack[ssp++] = r;
+			callStack[csp] = r;
+			callPos[csp++] = outStart[r];
+			while (csp > 0) {
+				final int v = callStack[csp - 1];
+				final int p = callPos[csp - 1];
+				if (p < outStart[v + 1]) {
+					callPos[csp - 1]++;
+					final int w = outTarget[p];
+					if (idx[w] < 0) {
+						idx[w] = low[w] = counter++;
+						sccStack[ssp++] = w;
+						callStack[csp] = w;
+						callPos[csp++] = outStart[w];
+					} else if (comp[w] < 0) {
+						low[v] = Math.min(low[v], idx[w]);
+					}
+					continue;
+				}
+				csp--;
+				if (csp > 0)
+					low[callStack[csp - 1]] = Math.min(low[callStack[csp - 1]], low[v]);
+				if (low[v] != idx[v])
+					continue;
+				do {
+					comp[sccStack[--ssp]] = result;
+				} while (sccStack[ssp] != v);
+				result++;
+			}
+		}
+		return result;
+	}
+
+	// Components reach lower numbered ones only, so each closure is the union of
+	// already computed ones.
+	private void computeClosure(final int[] memberStart, final int[] member) {
+		closure = new long[comps * words];
+		for (int c = 0; c < comps; c++) {
+			final int base = c * words;
+			for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+				for (int e = outStart[member[m]]; e < outStart[member[m] + 1]; e++) {
+					final int w = outTarget[e];
+					closure[base + (w >>> 6)] |= 1L << w;
+					if (comp[w] != c)
+						for (int i = 0; i < words; i++)
+							closure[base + i] |= closure[comp[w] * words + i];
+				}
+			}
+		}
+	}
+
+	// The component DAG, then one interval per component and traversal: its rank
+	// in post-order and the lowest rank among the components it reaches. Roots and
+	// children are visited from a random offset, so that the traversals differ.
+	private void computeLabels(final int[] memberStart, final int[] member) {
+		dagStart = new int[comps + 1];
+		final int[] targets = new int[outTarget.length];
+		final int[] seen = new int[comps];
+		Arrays.fill(seen, -1);
+		int k = 0;
+		for (int c = 0; c < comps; c++) {
+			dagStart[c] = k;
+			for (int m = memberStart[c]; m < memberStart[c + 1]; m++) {
+				for (int e = outStart[member[m]]; e < outStart[member[m] + 1]; e++) {
+					final int d = comp[outTarget[e]];
+					if (d != c && seen[d] != c) {
+						seen[d] = c;
+						targets[k++] = d;
+					}
+				}
+			}
+		}
+		dagStart[comps] = k;
+		dagTarget = Arrays.copyOf(targets, k);
+
+		labelLow = new int[LABELS * comps];
+		labelHigh = new int[LABELS * comps];
+		final Random random = new Random(SEED);
+		final int[] stack = new int[comps];
+		final int[] pos = new int[comps];
+		final int[] shift = new int[comps];
+		Arrays.fill(seen, -1);
+		for (int t = 0; t < LABELS; t++) {
+			final int base = t * comps;
+			final int offset = comps == 0 ? 0 : random.nextInt(comps);
+			int rank = 0;
+			for (int i = 0; i < comps; i++) {
+				final int r = (offset + i) % comps;
+				if (seen[r] == t)
+					continue;
+				int sp = 0;
+				seen[r] = t;
+				pos[r] = 0;
+				shift[r] = degree(r) == 0 ? 0 : random.nextInt(degree(r));
+				stack[sp++] = r;
+				while (sp > 0) {
+					final int c = stack[sp - 1];
+					final int degree = degree(c);
+					if (pos[c] < degree) {
+						final int d = dagTarget[dagStart[c] + (shift[c] + pos[c]++) % degree];
+						if (seen[d] != t) {
+							seen[d] = t;
+							pos[d] = 0;
+							shift[d] = degree(d) == 0 ? 0 : random.nextInt(degree(d));
+							stack[sp++] = d;
+						}
+						continue;
+					}
+					sp--;
+					int low = rank;
+					for (int e = dagStart[c]; e < dagStart[c + 1]; e++)
+						low = Math.min(low, labelLow[base + dagTarget[e]]);
+					labelLow[base + c] = low;
+					labelHigh[base + c] = rank++;
+				}
+			}
+		}
+	}
+
+	private int degree(final int c) {
+		return dagStart[c + 1] - dagStart[c];
+	}
+
+	// Whether the intervals of c contain those of d, which they do if c reaches d.
+	private boolean contains(final int c, final int d) {
+		for (int base = 0; base < labelLow.length; base += comps)
+			if (labelLow[base + c] > labelLow[base + d] || labelHigh[base + d] > labelHigh[base + c])
+				return false;
+		return true;
+	}
+
+	// Whether component cs reaches a different component ct. The search only
+	// enters components numbered above ct whose intervals contain those of ct.
+	private boolean reaches(final int cs, final int ct) {
+		if (ct > cs || !contains(cs, ct))
+			return false;
+		final Scratch s = SCRATCH.get().reset(comps);
+		s.mark(cs);
+		s.stack[s.sp++] = cs;
+		while (s.sp > 0) {
+			final int c = s.stack[--s.sp];
+			for (int e = dagStart[c]; e < dagStart[c + 1]; e++) {
+				final int d = dagTarget[e];
+				if (d == ct)
+					return true;
+				if (d > ct && !s.marked(d) && contains(d, ct)) {
+					s.mark(d);
+					s.stack[s.sp++] = d;
+				}
+			}
+		}
+		return false;
+	}
+
+	// Marks of the components visited by the current search, told apart from
+	// those of earlier ones by a stamp.
+	private static class Scratch {
+
+		int[] marks = new int[0];
+		int stamp;
+		int[] stack = new int[0];
+		int sp;
+
+		Scratch reset(final int n) {
+			if (marks.length < n) {
+				marks = new int[n];
+				stack = new int[n];
+				stamp = 0;
+			}
+			if (++stamp == 0) {
+				Arrays.fill(marks, 0);
+				stamp = 1;
+			}
+			sp = 0;
+			return this;
+		}
+
+		void mark(final int c) {
+			marks[c] = stamp;
+		}
+
+		boolean marked(final int c) {
+			return marks[c] == stamp;
+		}
+
+	}
+
+}
@@ -1,145 +1,338 @@
-package sourcedg.validation;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-
-import org.jgrapht.GraphPath;
-import org.jgrapht.alg.shortestpath.DijkstraShortestPath;
-
-import sourcedg.graph.CFG;
-import sourcedg.graph.Edge;
-import sourcedg.graph.Vertex;
-import sourcedg.validation.SubgraphQuery.SubgraphQueryEdge;
-import sourcedg.validation.SubgraphQuery.SubgraphQueryNode;
-
-public class SubgraphMatching {
-	
-	public Set<Map<SubgraphQueryNode, Vertex>> subgraphMatching(CFG g, SubgraphQuery q) {
-		Set<Map<SubgraphQueryNode, Vertex>> sol = new HashSet<>();
-		
-		// Compute search space.
-		Map<SubgraphQueryNode, List<Vertex>> ss = new HashMap<>();
-		boolean hasEmptySS = false;
-		SubgraphQueryNode firstNode = null;
-		
-		for (Iterator<SubgraphQueryNode> it = q.vertexSet().iterator(); !hasEmptySS && it.hasNext(); ) {
-			SubgraphQueryNode u = it.next();
-			List<Vertex> l = new ArrayList<>();
-			ss.put(u, l);
-			
-			for (Vertex v : g.vertexSet())
-				// Ensure that the type of the query node and whatever is coming from the CFG matches at the AST level.
-				if ((q.getEdge(u, u) == null || g.getEdge(v, v) != null) &&
-						(u.type == null || (v.getType() != null && v.getType().equals(u.type))) && 
-							(u.ast == null || (v.getAst() != null && v.getAst() == u.ast)))
-					l.add(v);
-			hasEmptySS = l.isEmpty();
-			
-			if (firstNode == null || ss.get(firstNode).size() > l.size())
-				firstNode = u;
-		}
-		
-		if (!hasEmptySS)
-			backtrackSearch(0, g, q, ss, computeOrder(q, ss, firstNode), new HashMap<>(), sol);
-		
-		return sol;
-	}
-	
-	private List<SubgraphQueryNode> computeOrder(SubgraphQuery query, Map<SubgraphQueryNode, List<Vertex>> searchSpace, SubgraphQueryNode first) {
-		List<SubgraphQueryNode> order = new ArrayList<>();
-		order.add(first);
-		
-		Set<SubgraphQueryNode> toTreat = new HashSet<>(query.getUndirectedNeighbors(first)), treated = new HashSet<>();
-		toTreat.removeAll(order);
-		treated.add(first);
-		
-		while (toTreat.size() > 0) {
-			SubgraphQueryNode next = null;
-			double minCost = Double.MAX_VALUE;
-			
-			for (SubgraphQueryNode u : toTreat) {
-				Set<SubgraphQueryNode> intersection = new HashSet<>(query.getUndirectedNeighbors(u));
-				intersection.retainAll(treated);
-				
-				double cost = searchSpace.get(u).size() * Math.pow(0.5, intersection.size());
-				if (cost < minCost) {
-					next = u;
-					minCost = cost;
-				}
-			}
-			
-			order.add(next);
-			treated.add(next);
-			
-			toTreat.addAll(query.getUndirectedNeighbors(next));
-			toTreat.removeAll(order);
-		}
-		
-		return order;
-	}
-	
-	private void backtrackSearch(int i, CFG g, SubgraphQuery query, Map<SubgraphQueryNode, List<Vertex>> searchSpace, 
-			List<SubgraphQueryNode> order, Map<SubgraphQueryNode, Vertex> currentSolution, Set<Map<SubgraphQueryNode, Vertex>> solutions) {
-		if (i == order.size())
-			solutions.add(new HashMap<>(currentSolution));
-		else {
-			SubgraphQueryNode u = order.get(i);
-			for (Vertex v : searchSpace.get(u))
-				if (canMap(u, query, v, g, currentSolution)) {
-					currentSolution.put(u, v);
-					backtrackSearch(i + 1, g, query, searchSpace, order, currentSolution, solutions);
-					currentSolution.remove(u);
-				}
-		}
-	}
-	
-	private boolean canMap(SubgraphQueryNode u, SubgraphQuery query, Vertex v, CFG g, Map<SubgraphQueryNode, Vertex> currentSolution) {
-		boolean canMap = true;
-		
-		Set<SubgraphQueryNode> neigh = query.getUndirectedNeighbors(u);
-		neigh.retainAll(currentSolution.keySet());
-		
-		for (Iterator<SubgraphQueryNode> nIt = neigh.iterator(); canMap && nIt.hasNext(); ) {
-			SubgraphQueryNode n = nIt.next();
-			Vertex o = currentSolution.get(n);
-			
-			SubgraphQueryEdge queryEdge = null;
-			GraphPath<Vertex, Edge> dataPath = null;
-			
-			// From u to n.
-			if (query.containsEdge(u, n)) {
-				queryEdge = query.getEdge(u, n);
-				dataPath = DijkstraShortestPath.findPathBetween(g, v, o);
-			} else {
-				queryEdge = query.getEdge(n, u);
-				dataPath = DijkstraShortestPath.findPathBetween(g, o, v);
-			}
-			
-			canMap = canMap && dataPath != null && (!queryEdge.isPath ? dataPath.getLength() == 1 : dataPath.getLength() >= 1);
-		}
-		
-		// TODO 0: Induced?
-//		Set<SubgraphQueryNode> rest = new HashSet<>(currentSolution.keySet());
-//		rest.removeAll(neigh);
-//		
-//		for (Iterator<SubgraphQueryNode> rIt = rest.iterator(); canMap && rIt.hasNext(); ) {
-//			SubgraphQueryNode r = rIt.next();
-//			Vertex o = currentSolution.get(r);
-//			
-//			// TODO 0: Are these paths of just simple edges.
-//			GraphPath<Vertex, Edge> dataPath = DijkstraShortestPath.findPathBetween(g, v, o);
-//			canMap = canMap && dataPath == null;
-//			
-//			dataPath = DijkstraShortestPath.findPathBetween(g, o, v);
-//			canMap = canMap && dataPath == null;
-//		}
-		
-		return canMap;
-	}
-	
-}
+package sourcedg.validation;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+import org.jgrapht.Graph;
+
+import sourcedg.graph.Edge;
+import sourcedg.graph.EdgeType;
+import sourcedg.graph.Vertex;
+import sourcedg.validation.SubgraphQuery.SubgraphQueryEdge;
+import sourcedg.validation.SubgraphQuery.SubgraphQueryNode;
+
+/*
+ * Backtracking subgraph matching. Matches are found lazily, one at a time, so
+ * that exists, findFirst and iterating over part of the matches stop the search
+ * as soon as they are done. The methods taking a Reachability and a
+ * CandidateIndex let all the queries matched against g share them.
+ *
+ * Any graph of vertices and edges can be searched, a CFG or a PDG alike; query
+ * edges may be restricted to some edge types and query nodes to some subtypes.
+ */
+public class SubgraphMatching {
+
+	public Set<Map<SubgraphQueryNode, Vertex>> subgraphMatching(Graph<Vertex, Edge> g, SubgraphQuery q) {
+		return subgraphMatching(g, q, new Reachability(g), new CandidateIndex(g));
+	}
+
+	public Set<Map<SubgraphQueryNode, Vertex>> subgraphMatching(Graph<Vertex, Edge> g, SubgraphQuery q,
+			Reachability reach, CandidateIndex candidates) {
+		Set<Map<SubgraphQueryNode, Vertex>> sol = new HashSet<>();
+		for (Iterator<Map<SubgraphQueryNode, Vertex>> it = matches(g, q, reach, candidates); it.hasNext(); )
+			sol.add(it.next());
+		return sol;
+	}
+
+	public boolean exists(Graph<Vertex, Edge> g, SubgraphQuery q) {
+		return exists(g, q, new Reachability(g), new CandidateIndex(g));
+	}
+
+	public boolean exists(Graph<Vertex, Edge> g, SubgraphQuery q, Reachability reach,
+			CandidateIndex candidates) {
+		return matches(g, q, reach, candidates).hasNext();
+	}
+
+	public Optional<Map<SubgraphQueryNode, Vertex>> findFirst(Graph<Vertex, Edge> g, SubgraphQuery q) {
+		return findFirst(g, q, new Reachability(g), new CandidateIndex(g));
+	}
+
+	public Optional<Map<SubgraphQueryNode, Vertex>> findFirst(Graph<Vertex, Edge> g, SubgraphQuery q,
+			Reachability reach, CandidateIndex candidates) {
+		Iterator<Map<SubgraphQueryNode, Vertex>> it = matches(g, q, reach, candidates);
+		return it.hasNext() ? Optional.of(it.next()) : Optional.empty();
+	}
+
+	public Stream<Map<SubgraphQueryNode, Vertex>> stream(Graph<Vertex, Edge> g, SubgraphQuery q) {
+		return stream(g, q, new Reachability(g), new CandidateIndex(g));
+	}
+
+	public Stream<Map<SubgraphQueryNode, Vertex>> stream(Graph<Vertex, Edge> g, SubgraphQuery q, Reachability reach,
+			CandidateIndex candidates) {
+		return StreamSupport.stream(Spliterators.spliteratorUnknownSize(matches(g, q, reach, candidates),
+				Spliterator.DISTINCT | Spliterator.NONNULL), false);
+	}
+
+	// Same solutions as subgraphMatching, searched by the given pool.
+	public Set<Map<SubgraphQueryNode, Vertex>> subgraphMatching(Graph<Vertex, Edge> g, SubgraphQuery q,
+			Reachability reach, CandidateIndex candidates, ForkJoinPool pool) {
+		return new HashSet<>(parallelMatches(g, q, reach, candidates, Integer.MAX_VALUE, pool));
+	}
+
+	// The first limit matches in the order matches(g, q) would give them, searched
+	// by the given pool. The top levels of the matching order are split into
+	// tasks, the rest of each branch is searched sequentially. Branches after the
+	// first limit matches are cancelled.
+	public List<Map<SubgraphQueryNode, Vertex>> parallelMatches(Graph<Vertex, Edge> g, SubgraphQuery q,
+			Reachability reach, CandidateIndex candidates, int limit, ForkJoinPool pool) {
+		return parallelMatches(plan(g, q, reach, candidates), limit, pool);
+	}
+
+	static List<Map<SubgraphQueryNode, Vertex>> parallelMatches(QueryPlan plan, int limit, ForkJoinPool pool) {
+		List<Map<SubgraphQueryNode, Vertex>> result = new ArrayList<>();
+		if (plan == null || limit <= 0)
+			return result;
+		if (plan.size() == 0) {
+			result.add(new HashMap<>());
+			return result;
+		}
+		int[] mappedIdx = new int[plan.size()];
+		int[] choices = plan.choices(0, mappedIdx);
+		SearchTask root = new SearchTask(null, plan, new Vertex[plan.size()], mappedIdx, 0, choices, 0,
+				count(plan, 0, choices), limit);
+		for (Vertex[] mapped : pool.invoke(root))
+			result.add(solution(plan, mapped));
+		return result;
+	}
+
+	public Iterator<Map<SubgraphQueryNode, Vertex>> matches(Graph<Vertex, Edge> g, SubgraphQuery q) {
+		return matches(g, q, new Reachability(g), new CandidateIndex(g));
+	}
+
+	// Every match once, the search advances as they are asked for.
+	public Iterator<Map<SubgraphQueryNode, Vertex>> matches(Graph<Vertex, Edge> g, SubgraphQuery q, Reachability reach,
+			CandidateIndex candidates) {
+		return matches(plan(g, q, reach, candidates));
+	}
+
+	static Iterator<Map<SubgraphQueryNode, Vertex>> matches(QueryPlan plan) {
+		return new Matches(plan);
+	}
+
+	// Null if some query node has no candidates.
+	private QueryPlan plan(Graph<Vertex, Edge> g, SubgraphQuery q, Reachability reach, CandidateIndex candidates) {
+		// Compute search space.
+		Map<SubgraphQueryNode, List<Vertex>> ss = new HashMap<>();
+
+		for (SubgraphQueryNode u : q.vertexSet()) {
+			List<Vertex> l = searchSpace(g, candidates, u, q.getEdge(u, u));
+			if (l.isEmpty())
+				return null;
+			ss.put(u, l);
+		}
+
+		return QueryPlan.compile(q, ss, reach);
+	}
+
+	// Candidates of a query node, with a self-loop of the allowed types if the node has one.
+	static List<Vertex> searchSpace(Graph<Vertex, Edge> g, CandidateIndex candidates, SubgraphQueryNode u,
+			SubgraphQueryEdge loop) {
+		// Ensure that the type of the query node and whatever is coming from the CFG matches at the AST level.
+		List<Vertex> l = new ArrayList<>(candidates.candidates(u.type, u.ast, u.subtypes));
+		if (loop != null)
+			l.removeIf(v -> !hasLoop(g, v, loop.types));
+		return l;
+	}
+
+	private static boolean hasLoop(Graph<Vertex, Edge> g, Vertex v, Set<EdgeType> types) {
+		for (Edge e : g.getAllEdges(v, v))
+			if (types == null || types.contains(e.getType()))
+				return true;
+		return false;
+	}
+
+	private static int count(QueryPlan plan, int i, int[] choices) {
+		return choices == null ? plan.candidateCount(i) : choices.length;
+	}
+
+	private static Map<SubgraphQueryNode, Vertex> solution(QueryPlan plan, Vertex[] mapped) {
+		Map<SubgraphQueryNode, Vertex> result = new HashMap<>();
+		for (int j = 0; j < plan.size(); j++)
+			result.put(plan.node(j), mapped[j]);
+		return result;
+	}
+
+	// Backtracking with an explicit stack: the candidates to try and the next one
+	// at every position up to the current one.
+	private static class Matches implements Iterator<Map<SubgraphQueryNode, Vertex>> {
+
+		private final QueryPlan plan;
+		private final Vertex[] currentSolution;
+		private final int[] currentIdx;
+		private final int[][] choices;
+		private final int[] next;
+		private final int from;
+		private int depth;
+		private boolean done;
+		private Map<SubgraphQueryNode, Vertex> pending;
+
+		Matches(QueryPlan plan) {
+			this(plan, plan == null ? null : new Vertex[plan.size()], plan == null ? null : new int[plan.size()], 0);
+		}
+
+		// Matches extending the vertices mapped before from, candidates mappedIdx.
+		Matches(QueryPlan plan, Vertex[] prefix, int[] mappedIdx, int from) {
+			this.plan = plan;
+			this.from = from;
+			done = plan == null;
+			currentSolution = prefix;
+			currentIdx = mappedIdx;
+			choices = done ? null : new int[plan.size()][];
+			next = done ? null : new int[plan.size()];
+			depth = from;
+			if (!done && from < plan.size())
+				choices[from] = plan.choices(from, currentIdx);
+		}
+
+		@Override
+		public boolean hasNext() {
+			if (pending == null && !done)
+				pending = advance();
+			return pending != null;
+		}
+
+		@Override
+		public Map<SubgraphQueryNode, Vertex> next() {
+			if (!hasNext())
+				throw new NoSuchElementException();
+			Map<SubgraphQueryNode, Vertex> result = pending;
+			pending = null;
+			return result;
+		}
+
+		private Map<SubgraphQueryNode, Vertex> advance() {
+			int size = plan.size();
+			if (size == from) {
+				done = true;
+				return solution(plan, currentSolution);
+			}
+			while (true) {
+				int i = depth;
+				int[] cs = choices[i];
+				int count = count(plan, i, cs);
+				int p = next[i];
+				while (p < count && !plan.canMap(i, cs == null ? p : cs[p], currentIdx, currentSolution))
+					p++;
+				if (p == count) {
+					// Position i is exhausted, back to the previous one.
+					currentSolution[i] = null;
+					if (i == from) {
+						done = true;
+						return null;
+					}
+					depth--;
+					continue;
+				}
+				int c = cs == null ? p : cs[p];
+				currentSolution[i] = plan.candidate(i, c);
+				currentIdx[i] = c;
+				next[i] = p + 1;
+				if (i + 1 == size)
+					return solution(plan, currentSolution);
+				depth++;
+				next[depth] = 0;
+				choices[depth] = plan.choices(depth, currentIdx);
+			}
+		}
+
+	}
+
+	// Matches of the choices lo to hi - 1 at position i, all the candidates if
+	// choices is null, extending the vertices mapped before it, in sequential
+	// order and up to limit.
+	private static class SearchTask extends RecursiveTask<List<Vertex[]>> {
+
+		private static final long serialVersionUID = 1L;
+		// Positions split into tasks, one per candidate.
+		private static final int SPLIT_DEPTH = 2;
+
+		private final SearchTask parent;
+		private final QueryPlan plan;
+		private final Vertex[] prefix;
+		private final int[] prefixIdx;
+		private final int[] choices;
+		private final int i, lo, hi, limit;
+		private volatile boolean stopped;
+
+		SearchTask(SearchTask parent, QueryPlan plan, Vertex[] prefix, int[] prefixIdx, int i, int[] choices, int lo,
+				int hi, int limit) {
+			this.parent = parent;
+			this.plan = plan;
+			this.prefix = prefix;
+			this.prefixIdx = prefixIdx;
+			this.i = i;
+			this.choices = choices;
+			this.lo = lo;
+			this.hi = hi;
+			this.limit = limit;
+		}
+
+		@Override
+		protected List<Vertex[]> compute() {
+			if (hi - lo > 1) {
+				int mid = (lo + hi) >>> 1;
+				SearchTask right = new SearchTask(this, plan, prefix, prefixIdx, i, choices, mid, hi, limit);
+				right.fork();
+				List<Vertex[]> result = new SearchTask(this, plan, prefix, prefixIdx, i, choices, lo, mid, limit)
+						.compute();
+				if (result.size() >= limit || isStopped()) {
+					right.stopped = true;
+					right.cancel(false);
+					return result;
+				}
+				List<Vertex[]> rest = right.join();
+				for (int k = 0; k < rest.size() && result.size() < limit; k++)
+					result.add(rest.get(k));
+				return result;
+			}
+			List<Vertex[]> result = new ArrayList<>();
+			if (lo == hi || isStopped())
+				return result;
+			int c = choices == null ? lo : choices[lo];
+			if (!plan.canMap(i, c, prefixIdx, prefix))
+				return result;
+			Vertex[] mapped = prefix.clone();
+			int[] mappedIdx = prefixIdx.clone();
+			mapped[i] = plan.candidate(i, c);
+			mappedIdx[i] = c;
+			if (i + 1 == plan.size()) {
+				result.add(mapped);
+				return result;
+			}
+			if (i + 1 < SPLIT_DEPTH) {
+				int[] cs = plan.choices(i + 1, mappedIdx);
+				return new SearchTask(this, plan, mapped, mappedIdx, i + 1, cs, 0, count(plan, i + 1, cs), limit)
+						.compute();
+			}
+			for (Matches it = new Matches(plan, mapped, mappedIdx, i + 1); result.size() < limit && !isStopped()
+					&& it.hasNext(); ) {
+				it.next();
+				// Vertices of the match just returned.
+				result.add(it.currentSolution.clone());
+			}
+			return result;
+		}
+
+		private boolean isStopped() {
+			for (SearchTask t = this; t != null; t = t.parent)
+				if (t.stopped)
+					return true;
+			return false;
+		}
+
+	}
+
+}
@@ -1,5 +1,7 @@
 package sourcedg.validation;
 
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -7,6 +9,7 @@ import org.jgrapht.graph.DefaultDirectedGraph;
 
 import com.github.javaparser.ast.Node;
 
+import sourcedg.graph.EdgeType;
 import sourcedg.graph.VertexType;
 import sourcedg.validation.SubgraphQuery.SubgraphQueryEdge;
 import sourcedg.validation.SubgraphQuery.SubgraphQueryNode;
@@ -14,6 +17,8 @@ import sourcedg.validation.SubgraphQuery.SubgraphQueryNode;
 public class SubgraphQuery extends DefaultDirectedGraph<SubgraphQueryNode, SubgraphQueryEdge> {
 	private static final long serialVersionUID = -513017247218635783L;
 	private SubgraphQueryNode mainNode;
+	// Whether matches must not have paths between the vertices of non-adjacent nodes.
+	private boolean induced;
 	
 	public SubgraphQuery(Class<? extends SubgraphQueryEdge> edgeClass) {
 		super(edgeClass);
@@ -34,9 +39,15 @@ public class SubgraphQuery extends DefaultDirectedGraph<SubgraphQueryNode, Subgr
 	}
 	
 	public SubgraphQueryNode addVertex(VertexType type, Node ast) {
+		return addVertex(type, ast, Collections.emptySet());
+	}
+	
+	// Matches vertices having all the given subtypes, besides the type and the AST node.
+	public SubgraphQueryNode addVertex(VertexType type, Node ast, Set<String> subtypes) {
 		SubgraphQueryNode n = new SubgraphQueryNode();
 		n.type = type;
 		n.ast = ast;
+		n.subtypes = subtypes.isEmpty() ? Collections.emptySet() : new HashSet<>(subtypes);
 		addVertex(n);
 		return n;
 	}
@@ -48,20 +59,38 @@ public class SubgraphQuery extends DefaultDirectedGraph<SubgraphQueryNode, Subgr
 		return e;
 	}
 	
+	// An edge or a path only made of edges of the given types, null for any.
+	public SubgraphQueryEdge addEdge(SubgraphQueryNode src, SubgraphQueryNode tgt, boolean isPath,
+			Set<EdgeType> types) {
+		SubgraphQueryEdge e = new SubgraphQueryEdge(src, tgt, isPath, types);
+		addEdge(src, tgt, e);
+		return e;
+	}
+	
 	public class SubgraphQueryNode {
 		VertexType type;
 		Node ast;
+		Set<String> subtypes = Collections.emptySet();
 	}
 
 	public class SubgraphQueryEdge {
 		SubgraphQueryNode src, tgt;
 		boolean isPath;
+		Set<EdgeType> types;
 
 		public SubgraphQueryEdge(SubgraphQueryNode src, SubgraphQueryNode tgt, boolean isPath) {
+			this(src, tgt, isPath, null);
+		}
+
+		public SubgraphQueryEdge(SubgraphQueryNode src, SubgraphQueryNode tgt, boolean isPath, Set<EdgeType> types) {
 			super();
 			this.src = src;
 			this.tgt = tgt;
 			this.isPath = isPath;
+			if (types != null) {
+				this.types = EnumSet.noneOf(EdgeType.class);
+				this.types.addAll(types);
+			}
 		}
 		
 	}
@@ -70,6 +99,14 @@ public class SubgraphQuery extends DefaultDirectedGraph<SubgraphQueryNode, Subgr
 		return mainNode;
 	}
 	
+	public boolean isInduced() {
+		return induced;
+	}
+	
+	public void setInduced(boolean induced) {
+		this.induced = induced;
+	}
+	
 	@Override
 	public String toString() {
 		StringBuffer buf = new StringBuffer();
@@ -1,11 +1,10 @@
 package sourcedg.validation;
 
-import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.FileWriter;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.ArrayList;
@@ -15,10 +14,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 import java.util.stream.IntStream;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
 
 import com.github.javaparser.ast.Node;
 import com.github.javaparser.ast.NodeList;
@@ -47,6 +43,7 @@ import com.github.javaparser.ast.stmt.ThrowStmt;
 import com.github.javaparser.ast.stmt.TryStmt;
 import com.github.javaparser.ast.stmt.WhileStmt;
 
+import sourcedg.builder.CorpusSource;
 import sourcedg.builder.PDGBuilder;
 import sourcedg.builder.PDGBuilderConfig;
 import sourcedg.graph.CFG;
@@ -57,9 +54,12 @@ import sourcedg.validation.SubgraphQuery.SubgraphQueryNode;
 
 public class Validate {
 
+  // Match every query as an induced subgraph, which is stricter.
+  private static final boolean INDUCED = false;
+
   public static void main(final String[] args) throws Exception {
     final String filename = "era_bcb_sample";
-    final ZipFile zip = new ZipFile(filename + ".zip");
+    final CorpusSource corpus = CorpusSource.of(Paths.get(filename + ".zip"), StandardCharsets.UTF_8);
 
     final String chunkp = "validation_chunks/bcb-chunk$.txt";
 
@@ -72,14 +72,10 @@ public class Validate {
             chunk.replace(".txt", ".out").replace("validation_chunks", "validation_out"), true));
 
         for (final String p : programPaths) {
-          final ZipEntry folder = zip.getEntry(p);
-          final InputStream is = zip.getInputStream(folder);
-          try (BufferedReader buffer = new BufferedReader(new InputStreamReader(is))) {
-            final String s = buffer.lines().collect(Collectors.joining("\n"));
-            final byte[] encoded = s.getBytes();
-            final String programStr = new String(encoded, Charset.forName("UTF-8"));
+          // Each program is parsed straight from the archive.
+          try (InputStream is = corpus.open(p)) {
             try {
-              check(programStr);
+              check(is, corpus.getCharset());
             } catch (final Exception e) {
               String msg = "null";
               if (e.getMessage() != null)
@@ -96,7 +92,7 @@ public class Validate {
       }
     });
 
-    zip.close();
+    corpus.close();
 	  
 //	  byte[] encoded = Files.readAllBytes(Paths.get(new File(
 ////			  "programs/java8/validation/Example.java"
@@ -162,10 +158,10 @@ public class Validate {
 	  return info;
   }
 
-  private static void check(final String programStr) throws Exception {
+  private static void check(final InputStream in, final Charset charset) throws Exception {
     PDGBuilderConfig config = PDGBuilderConfig.create();
     final PDGBuilder builder = new PDGBuilder(config);
-    builder.build(programStr);
+    builder.build(in, charset);
     for (final CFG g : builder.getCfgs()) {
     	// TODO 0: Remove!!!!
     	if (!get(g, SynchronizedStmt.class).isEmpty())
@@ -185,6 +181,8 @@ public class Validate {
     	if (!get(g, LabeledStmt.class).isEmpty())
     		continue;
     	boolean withLabels = false;
+    	// Shares the indexes and the candidates of all the queries on this CFG.
+    	final QueryBatch batch = new QueryBatch(g);
     	
     	// Get all breaks, continues and returns.
     	final List<DisruptInfo> disruptions = new ArrayList<>();
@@ -237,7 +235,7 @@ public class Validate {
     		} else if (i.disrupt.getClass().equals(ReturnStmt.class))
     			q.addVertex(VertexType.RETURN, i.disrupt);
     		
-    		final Set<Map<SubgraphQueryNode, Vertex>> solutions = match(g, q);
+    		final Set<Map<SubgraphQueryNode, Vertex>> solutions = match(batch, q);
     		
     		// Only for returns.
     		if (!solutions.isEmpty() && i.disrupt.getClass().equals(ReturnStmt.class))
@@ -299,7 +297,7 @@ public class Validate {
         if (nextStmt != null && removeNode)
         	q.removeVertex(nextStmt);
 
-        match(g, q);
+        match(batch, q);
       }
 
       // Get all while and enhanced for nodes.
@@ -346,7 +344,7 @@ public class Validate {
           q.addPath(main, nextStmt);
         }
 
-        match(g, q);
+        match(batch, q);
       }
 
       // Get all do-while nodes.
@@ -385,7 +383,7 @@ public class Validate {
           q.addPath(main, nextStmt);
         }
 
-        match(g, q);
+        match(batch, q);
       }
 
       // Get all for nodes.
@@ -472,7 +470,7 @@ public class Validate {
           q.addPath(main, nextStmt);
         }
 
-        match(g, q);
+        match(batch, q);
       }
 
       // TODO 0: Switches, try-catch-finally.
@@ -552,11 +550,13 @@ public class Validate {
       return n;
   }
 
-  private static Set<Map<SubgraphQueryNode, Vertex>> match(final CFG g, final SubgraphQuery q) throws Exception {
-    final SubgraphMatching match = new SubgraphMatching();
+  private static Set<Map<SubgraphQueryNode, Vertex>> match(final QueryBatch batch, final SubgraphQuery q)
+      throws Exception {
     if (q.vertexSet().isEmpty())
     	throw new Exception("EQ");
-    final Set<Map<SubgraphQueryNode, Vertex>> solutions = match.subgraphMatching(g, q);
+    q.setInduced(INDUCED);
+    // Telling zero, one and more than one solutions apart only takes the first two.
+    final Set<Map<SubgraphQueryNode, Vertex>> solutions = batch.match(q, 2);
 
     if (solutions.isEmpty())
       // Zero solutions